@@ -66,19 +66,9 @@ import java.util.Objects;
 import java.util.Set;
 import java.util.UUID;
 import java.util.Vector;
-import okhttp3.OkHttpClient;
-import okhttp3.Request;
-import okhttp3.Response;
-import java.io.IOException;
-import java.net.URLEncoder;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 public class VoiceActivity extends AppCompatActivity implements VoiceService.Observer  {
     private static String accessToken = null;
-    private static final String ACCESS_TOKEN_URL = "https://quickstart-6052-dev.twil.io/access-token";
-    private static final OkHttpClient httpClient = new OkHttpClient();
-    private static final ExecutorService executor = Executors.newSingleThreadExecutor();
 
     private static final Logger log = new Logger(VoiceActivity.class);
     private static final int PERMISSIONS_ALL = 100;
@@ -98,7 +88,9 @@ public class VoiceActivity extends AppCompatActivity implements VoiceService.Obs
 
     private AlertDialog alertDialog;
     private UUID activeCallId;
+    private final AccessTokenManager.TokenListener tokenListener = token -> accessToken = token;
     private UUID pendingCallId;
+    private long statusVersion = -1;
     private String identity;
 
     @Override
@@ -131,6 +123,9 @@ public class VoiceActivity extends AppCompatActivity implements VoiceService.Obs
         // register with voice service
         voiceService(voiceService -> voiceService.registerObserver(this));
 
+        // keep the dialing token current as it is refreshed ahead of expiry
+        VoiceApplication.accessTokenManager().addTokenListener(tokenListener);
+
         // Ask for identity then register incoming calls
         initIdentityAndRegister();
 
@@ -197,6 +192,7 @@ public class VoiceActivity extends AppCompatActivity implements VoiceService.Obs
 
         // unregister with voice service
         voiceService(voiceService -> voiceService.unregisterObserver(this));
+        VoiceApplication.accessTokenManager().removeTokenListener(tokenListener);
 
         // unregister from receivers
         unregisterReceiver(bluetoothReceiver);
@@ -216,42 +212,42 @@ public class VoiceActivity extends AppCompatActivity implements VoiceService.Obs
                 invite.getTo(),
                 invite.getCallSid()));
         
-        voiceService(voiceService -> updateUI(voiceService.getStatus()));
+        refreshUI();
         log.debug("🔥 [VOICE_ACTIVITY] Updated UI after incoming call");}
 
     @Override
     public void connectCall(@NonNull final UUID callId, @NonNull ConnectOptions options) {
-        voiceService(voiceService -> updateUI(voiceService.getStatus()));
+        refreshUI();
     }
 
     @Override
     public void disconnectCall(@NonNull final UUID callId) {
-        voiceService(voiceService -> updateUI(voiceService.getStatus()));
+        refreshUI();
     }
 
     @Override
     public void acceptIncomingCall(@NonNull final UUID callId) {
-        voiceService(voiceService -> updateUI(voiceService.getStatus()));
+        refreshUI();
     }
 
     @Override
     public void rejectIncomingCall(@NonNull final UUID callId) {
-        voiceService(voiceService -> updateUI(voiceService.getStatus()));
+        refreshUI();
     }
 
     @Override
     public void cancelledCall(@NonNull final UUID callId) {
-        voiceService(voiceService -> updateUI(voiceService.getStatus()));
+        refreshUI();
     }
 
     @Override
     public void muteCall(@NonNull final UUID callId, boolean isMuted) {
-        voiceService(voiceService -> updateUI(voiceService.getStatus()));
+        refreshUI();
     }
 
     @Override
     public void holdCall(@NonNull final UUID callId, boolean isOnHold) {
-        voiceService(voiceService -> updateUI(voiceService.getStatus()));
+        refreshUI();
     }
 
     @Override
@@ -283,7 +279,7 @@ public class VoiceActivity extends AppCompatActivity implements VoiceService.Obs
                 error.getErrorCode(),
                 error.getMessage());
         Snackbar.make(coordinatorLayout, message, Snackbar.LENGTH_LONG).show();
-        voiceService(voiceService -> updateUI(voiceService.getStatus()));
+        refreshUI();
     }
 
     @Override
@@ -312,7 +308,7 @@ public class VoiceActivity extends AppCompatActivity implements VoiceService.Obs
                     error.getMessage());
             Snackbar.make(coordinatorLayout, message, Snackbar.LENGTH_LONG).show();
         }
-        voiceService(voiceService -> updateUI(voiceService.getStatus()));
+        refreshUI();
     }
 
     @Override
@@ -341,6 +337,18 @@ public class VoiceActivity extends AppCompatActivity implements VoiceService.Obs
         Snackbar.make(coordinatorLayout, message, Snackbar.LENGTH_LONG).show();
     }
 
+    @Override
+    public void onCallStatsSampled(@NonNull UUID callId,
+                                   long roundTripTime,
+                                   int jitter,
+                                   int packetsLost,
+                                   float mos) {
+        log.debug(() -> format(
+                Locale.US,
+                "call %s rtt=%dms jitter=%dms lost=%d mos=%.2f",
+                callId, roundTripTime, jitter, packetsLost, mos));
+    }
+
     static private String[] providePermissions() {
         List<String> permissionsList = new Vector<>() {{
             add(Manifest.permission.RECORD_AUDIO);
@@ -369,7 +377,17 @@ public class VoiceActivity extends AppCompatActivity implements VoiceService.Obs
         }};
     }
 
+    private void refreshUI() {
+        // skip the refresh when no call state changed since the last rendered snapshot
+        voiceService(voiceService -> {
+            if (voiceService.hasStatusChangedSince(statusVersion)) {
+                updateUI(voiceService.getStatus());
+            }
+        });
+    }
+
     private void updateUI(VoiceService.Status  status) {
+        statusVersion = status.version;
         // if there are any active calls, show in-call UI
         if (status.callMap.isEmpty()) {
             // hide in-call buttons
@@ -424,7 +442,7 @@ public class VoiceActivity extends AppCompatActivity implements VoiceService.Obs
 
             switch (action) {
                 case Constants.ACTION_INCOMING_CALL_NOTIFICATION:
-                    voiceService(voiceService -> updateUI(voiceService.getStatus()));
+                    refreshUI();
                     break;
                 case Constants.ACTION_ACCEPT_CALL:
                     answerCall(pendingCallId);
@@ -762,9 +780,9 @@ public class VoiceActivity extends AppCompatActivity implements VoiceService.Obs
 
     private void registerIncomingCalls() {
         // First fetch the access token, then register FCM
-        fetchAccessToken(new AccessTokenCallback() {
+        fetchAccessToken(new AccessTokenManager.Callback() {
             @Override
-            public void onSuccess(String token) {
+            public void onSuccess(@NonNull String token) {
                 accessToken = token;
                 // Update VoiceApplication with the new access token
                 updateVoiceApplicationToken(token);
@@ -785,7 +803,7 @@ public class VoiceActivity extends AppCompatActivity implements VoiceService.Obs
             }
 
             @Override
-            public void onError(String error) {
+            public void onError(@NonNull String error) {
                 log.error("Failed to fetch access token: " + error);
                 // Fallback to registration with existing token if available
                 if (accessToken != null) {
@@ -804,31 +822,9 @@ public class VoiceActivity extends AppCompatActivity implements VoiceService.Obs
         });
     }
 
-    private void fetchAccessToken(AccessTokenCallback callback) {
-        executor.execute(() -> {
-            try {
-                String encoded = identity != null ? identity : "alice";
-                try { encoded = URLEncoder.encode(encoded, "UTF-8"); } catch (Exception ignore) {}
-                String url = ACCESS_TOKEN_URL + "?identity=" + encoded;
-                Request request = new Request.Builder().url(url).build();
-
-                try (Response response = httpClient.newCall(request).execute()) {
-                    if (response.isSuccessful() && response.body() != null) {
-                        String token = response.body().string().trim();
-                        runOnUiThread(() -> callback.onSuccess(token));
-                    } else {
-                        runOnUiThread(() -> callback.onError("HTTP " + response.code()));
-                    }
-                }
-            } catch (IOException e) {
-                runOnUiThread(() -> callback.onError(e.getMessage()));
-            }
-        });
-    }
-
-    private interface AccessTokenCallback {
-        void onSuccess(String token);
-        void onError(String error);
+    private void fetchAccessToken(AccessTokenManager.Callback callback) {
+        VoiceApplication.accessTokenManager().getToken(
+                identity != null ? identity : "alice", callback);
     }
 
     private void updateVoiceApplicationToken(String token) {
@@ -29,6 +29,7 @@ import com.twilio.voice.CallException;
 import com.twilio.voice.CallInvite;
 import com.twilio.voice.ConnectOptions;
 import com.twilio.voice.RegistrationException;
+import com.twilio.voice.quickstart.FlightRecorderFormat.Event;
 
 import java.util.HashMap;
 import java.util.HashSet;
@@ -64,6 +65,7 @@ public class VoiceConnectionService extends ConnectionService {
         @Override
         public void onStateChanged(int state) {
             log.debug("Connection:onStateChanged " + stateMappingTbl.get(state));
+            FlightRecorder.record(Event.CONNECTION_STATE, callId, state);
             if (STATE_DISCONNECTED == state) {
                 // remove from db
                 VoiceConnectionService.connectionDatabase.remove(callId);
@@ -86,6 +88,7 @@ public class VoiceConnectionService extends ConnectionService {
         @Override
         public void onDisconnect() {
             log.debug("Connection:onDisconnect");
+            FlightRecorder.record(Event.CONNECTION_DISCONNECT, callId);
             voiceService(voiceService -> voiceService.disconnectCall(callId));
         }
 
@@ -97,6 +100,7 @@ public class VoiceConnectionService extends ConnectionService {
         @Override
         public void onAbort() {
             log.debug("Connection:onAbort");
+            FlightRecorder.record(Event.CONNECTION_ABORT, callId);
             voiceService(voiceService -> voiceService.disconnectCall(callId));
         }
 
@@ -104,24 +108,28 @@ public class VoiceConnectionService extends ConnectionService {
         @Override
         public void onAnswer() {
             log.debug("Connection:onAnswer");
+            FlightRecorder.record(Event.CONNECTION_ANSWER, callId);
             voiceService(voiceService -> voiceService.acceptCall(callId));
         }
 
         @Override
         public void onReject() {
             log.debug("Connection:onReject");
+            FlightRecorder.record(Event.CONNECTION_REJECT, callId);
             voiceService(voiceService -> voiceService.rejectIncomingCall(callId));
         }
 
         @Override
         public void onHold() {
             log.debug("Connection:onHold");
+            FlightRecorder.record(Event.CONNECTION_HOLD, callId);
             voiceService(voiceService -> voiceService.holdCall(callId));
         }
 
         @Override
         public void onUnhold() {
             log.debug("Connection:onUnhold");
+            FlightRecorder.record(Event.CONNECTION_UNHOLD, callId);
             voiceService(voiceService -> voiceService.holdCall(callId));
         }
 
@@ -0,0 +1,289 @@
+package com.twilio.voice.quickstart;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okio.ByteString;
+
+/**
+ * Fetches, persists and refreshes the Voice access token. A token is served from cache while its
+ * JWT exp claim is far enough in the future and refreshed in the background ahead of expiry.
+ * Concurrent requests for the same identity share a single in-flight fetch, and each request is
+ * only ever answered with a token fetched for its own identity.
+ */
+class AccessTokenManager {
+    private static final Logger log = new Logger(AccessTokenManager.class);
+    private static final String PREFERENCES_NAME = "access-token";
+    private static final String KEY_TOKEN = "token";
+    private static final String KEY_IDENTITY = "identity";
+    private static final String KEY_EXPIRY = "expiry";
+    // tokens closer than this to their expiry are not served and get refreshed
+    static final long REFRESH_MARGIN_MS = TimeUnit.MINUTES.toMillis(5);
+    // delay before retrying a failed background refresh, doubled after every further failure
+    static final long REFRESH_RETRY_MS = TimeUnit.SECONDS.toMillis(30);
+    static final long MAX_REFRESH_RETRY_MS = TimeUnit.MINUTES.toMillis(10);
+    // background refreshes stop after this many failures in a row, until the next requested fetch
+    static final int MAX_REFRESH_FAILURES = 6;
+
+    interface Callback {
+        void onSuccess(@NonNull final String token);
+        void onError(@NonNull final String error);
+    }
+
+    interface TokenListener {
+        void onTokenRefreshed(@NonNull final String token);
+    }
+
+    private final SharedPreferences preferences;
+    private final OkHttpClient httpClient;
+    private final String tokenUrl;
+    private final Executor callbackExecutor;
+    private final ScheduledExecutorService fetchExecutor =
+            Executors.newSingleThreadScheduledExecutor();
+    private final CopyOnWriteArrayList<TokenListener> tokenListeners = new CopyOnWriteArrayList<>();
+    // requests waiting for a fetch, by the identity they asked for
+    private final Map<String, List<Callback>> pendingCallbacks = new HashMap<>();
+    private final Set<String> fetchIdentities = new HashSet<>();
+    private String token;
+    private String identity;
+    private long expiryMillis;
+    private ScheduledFuture<?> refreshFuture;
+    private int refreshFailures;
+
+    AccessTokenManager(@NonNull final Context context, @NonNull final String tokenUrl) {
+        this(context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE),
+                new OkHttpClient(),
+                tokenUrl,
+                new Handler(Looper.getMainLooper())::post);
+    }
+
+    AccessTokenManager(@NonNull final SharedPreferences preferences,
+                       @NonNull final OkHttpClient httpClient,
+                       @NonNull final String tokenUrl,
+                       @NonNull final Executor callbackExecutor) {
+        this.preferences = preferences;
+        this.httpClient = httpClient;
+        this.tokenUrl = tokenUrl;
+        this.callbackExecutor = callbackExecutor;
+        this.token = preferences.getString(KEY_TOKEN, null);
+        this.identity = preferences.getString(KEY_IDENTITY, null);
+        this.expiryMillis = preferences.getLong(KEY_EXPIRY, 0);
+        if (null != token && null != identity) {
+            scheduleRefresh(identity, expiryMillis);
+        }
+    }
+
+    /*
+     * Returns the cached token for the identity if it is still valid, null otherwise.
+     */
+    @Nullable
+    synchronized String getCachedToken(@NonNull final String identity) {
+        return isValid(identity) ? token : null;
+    }
+
+    void getToken(@NonNull final String identity, @NonNull final Callback callback) {
+        final String cachedToken;
+        synchronized (this) {
+            cachedToken = isValid(identity) ? token : null;
+            if (null == cachedToken) {
+                List<Callback> callbacks = pendingCallbacks.get(identity);
+                if (null == callbacks) {
+                    callbacks = new ArrayList<>();
+                    pendingCallbacks.put(identity, callbacks);
+                }
+                callbacks.add(callback);
+                refreshFailures = 0;
+                startFetch(identity);
+            }
+        }
+        if (null != cachedToken) {
+            callbackExecutor.execute(() -> callback.onSuccess(cachedToken));
+        }
+    }
+
+    @VisibleForTesting
+    synchronized void invalidate() {
+        token = null;
+        expiryMillis = 0;
+        refreshFailures = 0;
+        if (null != refreshFuture) {
+            refreshFuture.cancel(false);
+            refreshFuture = null;
+        }
+        preferences.edit().remove(KEY_TOKEN).remove(KEY_EXPIRY).apply();
+    }
+
+    void addTokenListener(@NonNull final TokenListener listener) {
+        tokenListeners.addIfAbsent(listener);
+    }
+
+    void removeTokenListener(@NonNull final TokenListener listener) {
+        tokenListeners.remove(listener);
+    }
+
+    /*
+     * Reads the exp claim (seconds since epoch) of a JWT, returns 0 when it cannot be parsed.
+     */
+    static long parseExpiryMillis(@NonNull final String jwt) {
+        final JSONObject claims = parseClaims(jwt);
+        return (null != claims) ? TimeUnit.SECONDS.toMillis(claims.optLong("exp", 0)) : 0;
+    }
+
+    /*
+     * Decodes the payload of a JWT without verifying it, returns null when it cannot be parsed.
+     */
+    @Nullable
+    static JSONObject parseClaims(@NonNull final String jwt) {
+        try {
+            final String[] segments = jwt.split("\\.");
+            if (segments.length < 2) {
+                return null;
+            }
+            // accepts the unpadded base64url encoding of JWTs
+            final ByteString payload = ByteString.decodeBase64(segments[1]);
+            return (null != payload) ? new JSONObject(payload.string(StandardCharsets.UTF_8)) : null;
+        } catch (Exception e) {
+            log.error("failed to parse access token claims: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /*
+     * Delay before the next background refresh after the given number of failures in a row, -1
+     * once refreshing should stop.
+     */
+    static long refreshRetryDelayMillis(final int failures) {
+        if (failures >= MAX_REFRESH_FAILURES) {
+            return -1;
+        }
+        return Math.min(MAX_REFRESH_RETRY_MS, REFRESH_RETRY_MS << Math.max(0, failures - 1));
+    }
+
+    private boolean isValid(@NonNull final String identity) {
+        return null != token &&
+                identity.equals(this.identity) &&
+                System.currentTimeMillis() < expiryMillis - REFRESH_MARGIN_MS;
+    }
+
+    // must hold the lock
+    private void startFetch(@NonNull final String identity) {
+        if (!fetchIdentities.add(identity)) {
+            // share the fetch already in flight for this identity
+            return;
+        }
+        fetchExecutor.execute(() -> fetch(identity));
+    }
+
+    private void fetch(@NonNull final String identity) {
+        String fetchedToken = null;
+        String error = null;
+        try {
+            final String url = tokenUrl + "?identity=" + URLEncoder.encode(identity, "UTF-8");
+            final Request request = new Request.Builder().url(url).build();
+            try (Response response = httpClient.newCall(request).execute()) {
+                if (response.isSuccessful() && response.body() != null) {
+                    final String body = response.body().string().trim();
+                    fetchedToken = body.isEmpty() ? null : body;
+                } else {
+                    error = "HTTP " + response.code();
+                }
+            }
+        } catch (IOException e) {
+            error = e.getMessage();
+        }
+        complete(identity, fetchedToken, (null != error) ? error : "empty token");
+    }
+
+    private void complete(@NonNull final String identity,
+                          @Nullable final String fetchedToken,
+                          @NonNull final String error) {
+        final List<Callback> callbacks;
+        final long expiry = (null != fetchedToken) ? parseExpiryMillis(fetchedToken) : 0;
+        synchronized (this) {
+            fetchIdentities.remove(identity);
+            if (null != fetchedToken) {
+                token = fetchedToken;
+                this.identity = identity;
+                expiryMillis = expiry;
+                preferences.edit()
+                        .putString(KEY_TOKEN, fetchedToken)
+                        .putString(KEY_IDENTITY, identity)
+                        .putLong(KEY_EXPIRY, expiry)
+                        .apply();
+                refreshFailures = 0;
+                scheduleRefresh(identity, expiry);
+            } else if (identity.equals(this.identity) && null != token) {
+                // keep the current token & retry the refresh later, backing off
+                final long retryMillis = refreshRetryDelayMillis(++refreshFailures);
+                if (0 <= retryMillis) {
+                    scheduleRefresh(identity,
+                            System.currentTimeMillis() + REFRESH_MARGIN_MS + retryMillis);
+                } else {
+                    log.warning("giving up refreshing the access token after {} failures",
+                            refreshFailures);
+                }
+            }
+            final List<Callback> identityCallbacks = pendingCallbacks.remove(identity);
+            callbacks = (null != identityCallbacks) ? identityCallbacks : Collections.emptyList();
+        }
+        for (Callback callback : callbacks) {
+            if (null != fetchedToken) {
+                callbackExecutor.execute(() -> callback.onSuccess(fetchedToken));
+            } else {
+                callbackExecutor.execute(() -> callback.onError(error));
+            }
+        }
+        if (null != fetchedToken) {
+            for (TokenListener listener : tokenListeners) {
+                callbackExecutor.execute(() -> listener.onTokenRefreshed(fetchedToken));
+            }
+        }
+    }
+
+    // must hold the lock or be called from the constructor
+    private void scheduleRefresh(@NonNull final String identity, final long expiry) {
+        if (null != refreshFuture) {
+            refreshFuture.cancel(false);
+            refreshFuture = null;
+        }
+        if (0 == expiry) {
+            // unknown lifetime, fetch again whenever a token is requested
+            return;
+        }
+        final long delayMillis =
+                Math.max(0, expiry - REFRESH_MARGIN_MS - System.currentTimeMillis());
+        refreshFuture = fetchExecutor.schedule(() -> {
+            synchronized (AccessTokenManager.this) {
+                startFetch(identity);
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,86 @@
+package com.twilio.voice.quickstart;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * High priority looper thread owning all Voice SDK interaction and call state. Work is posted to
+ * its mailbox from any thread; SDK listeners fire back on the same looper. The time every task
+ * spends waiting in the mailbox before it starts running is measured.
+ */
+class CallControlThread implements Executor {
+    private static final Logger log = new Logger(CallControlThread.class);
+    // tasks waiting longer than this in the mailbox are logged
+    private static final long SLOW_QUEUE_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(16);
+
+    private final HandlerThread thread;
+    private final Handler handler;
+    private final AtomicLong taskCount = new AtomicLong();
+    private final AtomicLong totalQueueWaitNanos = new AtomicLong();
+    private final AtomicLong maxQueueWaitNanos = new AtomicLong();
+
+    CallControlThread() {
+        thread = new HandlerThread("CallControlThread", Process.THREAD_PRIORITY_AUDIO);
+        thread.start();
+        handler = new Handler(thread.getLooper());
+    }
+
+    @Override
+    public void execute(@NonNull final Runnable task) {
+        if (!offer(task)) {
+            log.error("call control thread has quit, task dropped");
+        }
+    }
+
+    /*
+     * Posts a task, returns false instead of dropping it silently when the thread has quit.
+     */
+    boolean offer(@NonNull final Runnable task) {
+        final long enqueueTime = SystemClock.elapsedRealtimeNanos();
+        return handler.post(() -> {
+            recordQueueWait(SystemClock.elapsedRealtimeNanos() - enqueueTime);
+            task.run();
+        });
+    }
+
+    Looper getLooper() {
+        return thread.getLooper();
+    }
+
+    void quitSafely() {
+        thread.quitSafely();
+    }
+
+    /*
+     * Tasks run so far and how long they waited in the mailbox, for the service's log.
+     */
+    @NonNull
+    @Override
+    public String toString() {
+        final long count = taskCount.get();
+        return "tasks=" + count
+                + " meanQueueWait=" + ((0 == count) ? 0 : totalQueueWaitNanos.get() / count / 1000) + "us"
+                + " maxQueueWait=" + (maxQueueWaitNanos.get() / 1000) + "us";
+    }
+
+    private void recordQueueWait(final long waitNanos) {
+        taskCount.incrementAndGet();
+        totalQueueWaitNanos.addAndGet(waitNanos);
+        long max = maxQueueWaitNanos.get();
+        while (waitNanos > max && !maxQueueWaitNanos.compareAndSet(max, waitNanos)) {
+            max = maxQueueWaitNanos.get();
+        }
+        if (waitNanos > SLOW_QUEUE_WAIT_NANOS) {
+            log.debug("call control task waited {}us in mailbox", waitNanos / 1000);
+        }
+    }
+}
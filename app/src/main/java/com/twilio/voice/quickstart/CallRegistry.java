@@ -0,0 +1,113 @@
+package com.twilio.voice.quickstart;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.twilio.voice.Call;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Call records indexed by call UUID, CallSid and {@link Call} instance so every lookup made
+ * from the service actions and the {@link Call.Listener} callbacks is O(1). All indexes are
+ * updated together, removing a record by any key drops it from every index. Records are added
+ * from the caller's thread when a call is placed, so every access holds the registry's lock.
+ */
+class CallRegistry {
+    private final Map<UUID, VoiceService.CallRecord> recordsById = new LinkedHashMap<>();
+    private final Map<String, UUID> idsBySid = new HashMap<>();
+    private final Map<Call, UUID> idsByCall = new IdentityHashMap<>();
+
+    synchronized void put(@NonNull final UUID callId, @NonNull final VoiceService.CallRecord callRecord) {
+        remove(callId);
+        recordsById.put(callId, callRecord);
+        if (null != callRecord.callInvite) {
+            indexCallSid(callId, callRecord.callInvite.getCallSid());
+        }
+        if (null != callRecord.activeCall) {
+            attachCall(callId, callRecord.activeCall);
+        }
+    }
+
+    synchronized void attachCall(@NonNull final UUID callId, @NonNull final Call call) {
+        final VoiceService.CallRecord callRecord = recordsById.get(callId);
+        if (null != callRecord) {
+            if (null != callRecord.activeCall && call != callRecord.activeCall) {
+                idsByCall.remove(callRecord.activeCall);
+            }
+            callRecord.activeCall = call;
+            idsByCall.put(call, callId);
+            indexCallSid(callId, call.getSid());
+        }
+    }
+
+    synchronized void indexCallSid(@NonNull final UUID callId, @Nullable final String callSid) {
+        final VoiceService.CallRecord callRecord = recordsById.get(callId);
+        if (null != callRecord && null != callSid && !callSid.equals(callRecord.callSid)) {
+            if (null != callRecord.callSid) {
+                idsBySid.remove(callRecord.callSid);
+            }
+            callRecord.callSid = callSid;
+            idsBySid.put(callSid, callId);
+        }
+    }
+
+    @Nullable
+    synchronized VoiceService.CallRecord get(@NonNull final UUID callId) {
+        return recordsById.get(callId);
+    }
+
+    @Nullable
+    synchronized UUID findCallId(@NonNull final String callSid) {
+        return idsBySid.get(callSid);
+    }
+
+    @Nullable
+    synchronized UUID findCallId(@NonNull final Call call) {
+        final UUID callId = idsByCall.get(call);
+        if (null != callId) {
+            // the sid of an outgoing call is only known once signalling has started
+            indexCallSid(callId, call.getSid());
+        }
+        return callId;
+    }
+
+    @Nullable
+    synchronized VoiceService.CallRecord remove(@NonNull final UUID callId) {
+        final VoiceService.CallRecord callRecord = recordsById.remove(callId);
+        if (null != callRecord) {
+            if (null != callRecord.callSid) {
+                idsBySid.remove(callRecord.callSid);
+            }
+            if (null != callRecord.activeCall) {
+                idsByCall.remove(callRecord.activeCall);
+            }
+        }
+        return callRecord;
+    }
+
+    synchronized boolean isEmpty() {
+        return recordsById.isEmpty();
+    }
+
+    synchronized int size() {
+        return recordsById.size();
+    }
+
+    synchronized Set<Map.Entry<UUID, VoiceService.CallRecord>> entrySet() {
+        // a copy, callers iterate it without holding the lock
+        return Collections.unmodifiableMap(new LinkedHashMap<>(recordsById)).entrySet();
+    }
+
+    synchronized Collection<VoiceService.CallRecord> records() {
+        return Collections.unmodifiableCollection(new ArrayList<>(recordsById.values()));
+    }
+}
@@ -0,0 +1,191 @@
+package com.twilio.voice.quickstart;
+
+import static java.lang.String.format;
+
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Process wide call setup latency instrumentation. A {@link Trace} collects monotonic timestamps
+ * of the milestones a call goes through, from the FCM push to ringing and from answer or dial to
+ * media. Each completed {@link Stage} is recorded in its own {@link LatencyHistogram}.
+ */
+class CallSetupMetrics {
+    enum Milestone {
+        PUSH_RECEIVED,
+        INVITE_RECEIVED,
+        SERVICE_INCOMING,
+        NOTIFICATION_POSTED,
+        RINGER_STARTED,
+        ANSWER_REQUESTED,
+        INVITE_ACCEPTED,
+        CONNECT_REQUESTED,
+        CONNECT_STARTED,
+        RINGING,
+        CONNECTED
+    }
+
+    // how a push reached the VoiceService
+    enum Handoff {
+        DIRECT,
+        INTENT
+    }
+
+    enum Stage {
+        PUSH_TO_INVITE(Milestone.PUSH_RECEIVED, Milestone.INVITE_RECEIVED),
+        INVITE_TO_SERVICE(Milestone.INVITE_RECEIVED, Milestone.SERVICE_INCOMING),
+        SERVICE_TO_NOTIFICATION(Milestone.SERVICE_INCOMING, Milestone.NOTIFICATION_POSTED),
+        SERVICE_TO_RINGER(Milestone.SERVICE_INCOMING, Milestone.RINGER_STARTED),
+        PUSH_TO_RINGER(Milestone.PUSH_RECEIVED, Milestone.RINGER_STARTED),
+        ANSWER_TO_ACCEPT(Milestone.ANSWER_REQUESTED, Milestone.INVITE_ACCEPTED),
+        ANSWER_TO_CONNECTED(Milestone.ANSWER_REQUESTED, Milestone.CONNECTED),
+        CONNECT_TO_SDK(Milestone.CONNECT_REQUESTED, Milestone.CONNECT_STARTED),
+        CONNECT_TO_RINGING(Milestone.CONNECT_REQUESTED, Milestone.RINGING),
+        CONNECT_TO_CONNECTED(Milestone.CONNECT_REQUESTED, Milestone.CONNECTED);
+
+        final Milestone start;
+        final Milestone end;
+
+        Stage(final Milestone start, final Milestone end) {
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    static class Trace {
+        private static final long UNSET = -1;
+        private final long[] timestamps = new long[Milestone.values().length];
+        private Handoff handoff;
+        final long createdNanos;
+
+        private Trace() {
+            Arrays.fill(timestamps, UNSET);
+            createdNanos = now();
+        }
+
+        synchronized void setHandoff(@NonNull final Handoff handoff) {
+            this.handoff = handoff;
+        }
+
+        /*
+         * Records the first occurrence of a milestone, later ones are ignored.
+         */
+        void mark(@NonNull final Milestone milestone) {
+            mark(milestone, now());
+        }
+
+        synchronized void mark(@NonNull final Milestone milestone, final long timestampNanos) {
+            if (UNSET != timestamps[milestone.ordinal()]) {
+                return;
+            }
+            timestamps[milestone.ordinal()] = timestampNanos;
+            for (Stage stage : STAGES) {
+                if (stage.end == milestone && UNSET != timestamps[stage.start.ordinal()]) {
+                    final long elapsedNanos = timestampNanos - timestamps[stage.start.ordinal()];
+                    histograms.get(stage).recordNanos(elapsedNanos);
+                    if (Stage.INVITE_TO_SERVICE == stage && null != handoff) {
+                        handoffHistograms.get(handoff).recordNanos(elapsedNanos);
+                    }
+                } else if (stage.start == milestone && UNSET != timestamps[stage.end.ordinal()]) {
+                    histograms.get(stage).recordNanos(
+                            timestamps[stage.end.ordinal()] - timestampNanos);
+                }
+            }
+        }
+    }
+
+    private static final Stage[] STAGES = Stage.values();
+    // invites the VoiceService never claimed are dropped after this long
+    private static final long PENDING_TRACE_TIMEOUT_NANOS = TimeUnit.MINUTES.toNanos(1);
+    private static final Map<Stage, LatencyHistogram> histograms = new EnumMap<>(Stage.class);
+    private static final Map<String, Trace> pendingIncomingTraces = new ConcurrentHashMap<>();
+    // invite to service latency & number of pushes per handoff path
+    private static final Map<Handoff, LatencyHistogram> handoffHistograms =
+            new EnumMap<>(Handoff.class);
+    private static final AtomicLongArray handoffCounts =
+            new AtomicLongArray(Handoff.values().length);
+
+    static {
+        for (Stage stage : STAGES) {
+            histograms.put(stage, new LatencyHistogram());
+        }
+        for (Handoff handoff : Handoff.values()) {
+            handoffHistograms.put(handoff, new LatencyHistogram());
+        }
+    }
+
+    static long now() {
+        return SystemClock.elapsedRealtimeNanos();
+    }
+
+    /*
+     * Starts the trace of an incoming call from the moment its push was received, the trace is
+     * parked under its CallSid until the VoiceService claims it.
+     */
+    static Trace startIncomingTrace(@NonNull final String callSid, final long pushReceivedNanos) {
+        final Trace trace = new Trace();
+        trace.mark(Milestone.PUSH_RECEIVED, pushReceivedNanos);
+        trace.mark(Milestone.INVITE_RECEIVED);
+        purgeStaleTraces(trace.createdNanos);
+        pendingIncomingTraces.put(callSid, trace);
+        return trace;
+    }
+
+    static Trace claimIncomingTrace(@NonNull final String callSid) {
+        final Trace trace = pendingIncomingTraces.remove(callSid);
+        return (null != trace) ? trace : new Trace();
+    }
+
+    static void discardIncomingTrace(@NonNull final String callSid) {
+        pendingIncomingTraces.remove(callSid);
+    }
+
+    static Trace startOutgoingTrace() {
+        final Trace trace = new Trace();
+        trace.mark(Milestone.CONNECT_REQUESTED);
+        return trace;
+    }
+
+    static void recordHandoff(@NonNull final Handoff handoff) {
+        handoffCounts.incrementAndGet(handoff.ordinal());
+    }
+
+    static String summary() {
+        final StringBuilder builder = new StringBuilder("call setup latency (ms):");
+        for (Stage stage : STAGES) {
+            final LatencyHistogram histogram = histograms.get(stage);
+            if (0 != histogram.getCount()) {
+                builder.append("\n\t").append(stage.name()).append(' ').append(histogram);
+            }
+        }
+        for (Handoff handoff : Handoff.values()) {
+            final LatencyHistogram histogram = handoffHistograms.get(handoff);
+            builder.append(format(Locale.US,
+                    "\n\t%s handoffs=%d invite_to_service p50=%.1f max=%.1f",
+                    handoff.name(),
+                    handoffCounts.get(handoff.ordinal()),
+                    histogram.getPercentileMicros(50) / 1e3,
+                    histogram.getMaxMicros() / 1e3));
+        }
+        return builder.toString();
+    }
+
+    private static void purgeStaleTraces(final long nowNanos) {
+        final Iterator<Trace> iterator = pendingIncomingTraces.values().iterator();
+        while (iterator.hasNext()) {
+            if (nowNanos - iterator.next().createdNanos > PENDING_TRACE_TIMEOUT_NANOS) {
+                iterator.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.twilio.voice.quickstart;
+
+import static java.lang.String.format;
+
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+
+import com.twilio.voice.LocalAudioTrackStats;
+import com.twilio.voice.RemoteAudioTrackStats;
+import com.twilio.voice.StatsListener;
+import com.twilio.voice.StatsReport;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+
+/**
+ * Fixed size ring buffer of media statistics samples for one call. Samples are stored in
+ * preallocated primitive arrays, recording a sample never allocates. Samples are indexed oldest
+ * first and may be read while the call is still being sampled.
+ */
+class CallStatsHistory implements StatsListener {
+    interface Listener {
+        void onStatsSample(@NonNull UUID callId,
+                           long roundTripTime,
+                           int jitter,
+                           int packetsLost,
+                           float mos);
+    }
+
+    private final UUID callId;
+    private final Listener listener;
+    private final int capacity;
+    private final long[] timestamps;
+    private final long[] roundTripTimes;
+    private final int[] jitters;
+    private final int[] packetsLost;
+    private final float[] mosScores;
+    private final long[] bytesSent;
+    private final long[] bytesReceived;
+    private int head;
+    private int size;
+
+    CallStatsHistory(@NonNull final UUID callId,
+                     final int capacity,
+                     @NonNull final Listener listener) {
+        this.callId = callId;
+        this.listener = listener;
+        this.capacity = capacity;
+        this.timestamps = new long[capacity];
+        this.roundTripTimes = new long[capacity];
+        this.jitters = new int[capacity];
+        this.packetsLost = new int[capacity];
+        this.mosScores = new float[capacity];
+        this.bytesSent = new long[capacity];
+        this.bytesReceived = new long[capacity];
+    }
+
+    @Override
+    public void onStats(@NonNull List<StatsReport> statsReports) {
+        long roundTripTime = 0;
+        int jitter = 0;
+        int lost = 0;
+        float mos = 0;
+        long sent = 0;
+        long received = 0;
+        for (int i = 0; i < statsReports.size(); ++i) {
+            final StatsReport statsReport = statsReports.get(i);
+            final List<LocalAudioTrackStats> localStats = statsReport.getLocalAudioTrackStats();
+            for (int j = 0; j < localStats.size(); ++j) {
+                final LocalAudioTrackStats stats = localStats.get(j);
+                roundTripTime = Math.max(roundTripTime, stats.roundTripTime);
+                lost += stats.packetsLost;
+                sent += stats.bytesSent;
+            }
+            final List<RemoteAudioTrackStats> remoteStats = statsReport.getRemoteAudioTrackStats();
+            for (int j = 0; j < remoteStats.size(); ++j) {
+                final RemoteAudioTrackStats stats = remoteStats.get(j);
+                jitter = Math.max(jitter, stats.jitter);
+                mos = (0 == mos) ? stats.mos : Math.min(mos, stats.mos);
+                lost += stats.packetsLost;
+                received += stats.bytesReceived;
+            }
+        }
+        record(SystemClock.elapsedRealtime(), roundTripTime, jitter, lost, mos, sent, received);
+        listener.onStatsSample(callId, roundTripTime, jitter, lost, mos);
+    }
+
+    synchronized void record(final long timestamp,
+                             final long roundTripTime,
+                             final int jitter,
+                             final int lost,
+                             final float mos,
+                             final long sent,
+                             final long received) {
+        final int index = (head + size) % capacity;
+        timestamps[index] = timestamp;
+        roundTripTimes[index] = roundTripTime;
+        jitters[index] = jitter;
+        packetsLost[index] = lost;
+        mosScores[index] = mos;
+        bytesSent[index] = sent;
+        bytesReceived[index] = received;
+        if (size < capacity) {
+            ++size;
+        } else {
+            head = (head + 1) % capacity;
+        }
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    synchronized String formatSample(final int sample) {
+        if (sample < 0 || sample >= size) {
+            throw new IndexOutOfBoundsException("sample " + sample + " of " + size);
+        }
+        final int index = (head + sample) % capacity;
+        return format(Locale.US,
+                "call %s t=%d rtt=%dms jitter=%dms lost=%d mos=%.2f sent=%d received=%d",
+                callId,
+                timestamps[index],
+                roundTripTimes[index],
+                jitters[index],
+                packetsLost[index],
+                mosScores[index],
+                bytesSent[index],
+                bytesReceived[index]);
+    }
+
+    synchronized void dump(@NonNull final StringBuilder builder) {
+        for (int i = 0; i < size; ++i) {
+            builder.append(formatSample(i)).append('\n');
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.twilio.voice.quickstart;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Polls Call.getStats() for every tracked call at a configurable interval while there are calls
+ * to sample. Sampling runs on the call control looper, the looper all other SDK calls are made on,
+ * and every sample is handed to the listener. The history of a call can be dumped while it is
+ * sampled and is logged, one sample per record, when it stops being tracked.
+ */
+class CallStatsSampler {
+    private static final Logger log = new Logger(CallStatsSampler.class);
+    static final long DEFAULT_SAMPLING_INTERVAL_MS = 1000;
+    static final int HISTORY_CAPACITY = 120;
+
+    private final Handler handler;
+    private final CallRegistry callRegistry;
+    private final CallStatsHistory.Listener listener;
+    private final Map<UUID, CallStatsHistory> histories = new ConcurrentHashMap<>();
+    private long samplingIntervalMs = DEFAULT_SAMPLING_INTERVAL_MS;
+    private boolean isRunning = false;
+
+    private final Runnable sampleRunnable = new Runnable() {
+        @Override
+        public void run() {
+            for (Map.Entry<UUID, CallStatsHistory> entry : histories.entrySet()) {
+                final VoiceService.CallRecord callRecord = callRegistry.get(entry.getKey());
+                if (null != callRecord && null != callRecord.activeCall &&
+                        !callRecord.activeCall.getStats(entry.getValue())) {
+                    log.debug("stats unavailable for call {}", entry.getKey());
+                }
+            }
+            isRunning = !histories.isEmpty();
+            if (isRunning) {
+                handler.postDelayed(this, samplingIntervalMs);
+            }
+        }
+    };
+
+    CallStatsSampler(@NonNull final Looper looper,
+                     @NonNull final CallRegistry callRegistry,
+                     @NonNull final CallStatsHistory.Listener listener) {
+        this.handler = new Handler(looper);
+        this.callRegistry = callRegistry;
+        this.listener = listener;
+    }
+
+    /*
+     * Sampling stops when the interval is not positive and restarts with the next sample due
+     * one interval from now.
+     */
+    void setSamplingInterval(final long intervalMs) {
+        samplingIntervalMs = intervalMs;
+        handler.removeCallbacks(sampleRunnable);
+        isRunning = false;
+        schedule();
+    }
+
+    void track(@NonNull final UUID callId) {
+        if (!histories.containsKey(callId)) {
+            histories.put(callId, new CallStatsHistory(callId, HISTORY_CAPACITY, listener));
+        }
+        schedule();
+    }
+
+    void untrack(@NonNull final UUID callId) {
+        final CallStatsHistory history = histories.remove(callId);
+        if (null != history) {
+            final int size = history.size();
+            log.debug("call {} stats, {} samples", callId, size);
+            for (int i = 0; i < size; ++i) {
+                final int sample = i;
+                log.debug(() -> history.formatSample(sample));
+            }
+        }
+        if (histories.isEmpty()) {
+            handler.removeCallbacks(sampleRunnable);
+            isRunning = false;
+        }
+    }
+
+    /*
+     * Safe to call from any thread, the samples of a call may be recorded while it is dumped.
+     */
+    void dump(@NonNull final StringBuilder builder) {
+        for (CallStatsHistory history : histories.values()) {
+            history.dump(builder);
+        }
+    }
+
+    void stop() {
+        histories.clear();
+        handler.removeCallbacks(sampleRunnable);
+        isRunning = false;
+    }
+
+    private void schedule() {
+        if (!isRunning && !histories.isEmpty() && 0 < samplingIntervalMs) {
+            isRunning = true;
+            handler.postDelayed(sampleRunnable, samplingIntervalMs);
+        }
+    }
+}
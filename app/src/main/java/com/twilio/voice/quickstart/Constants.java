@@ -1,6 +1,7 @@
 package com.twilio.voice.quickstart;
 
 public class Constants {
+    public static final String ACCESS_TOKEN_URL = "https://quickstart-6052-dev.twil.io/access-token";
     public static final String CALL_UUID = "CALL_UUID";
     public static final String ACCESS_TOKEN = "ACCESS_TOKEN";
     public static final String CUSTOM_RINGBACK = "CUSTOM_RINGBACK";
@@ -0,0 +1,125 @@
+package com.twilio.voice.quickstart;
+
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.twilio.voice.VoiceException;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded table of exception fingerprints. An exception is fingerprinted by its type, Voice error
+ * code and top stack frames so only the first occurrence of a kind needs to be logged in full,
+ * repeats are counted and reported in periodic summaries.
+ */
+class ExceptionAggregator {
+    static final int CAPACITY = 64;
+    static final int TOP_FRAMES = 3;
+    static final long SUMMARY_INTERVAL_MS = TimeUnit.MINUTES.toMillis(1);
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private static class Entry {
+        final String type;
+        final int code;
+        final String topFrame;
+        long count;
+        // count at the time of the last summary, repeats since then are reported in the next one
+        long summarizedCount;
+
+        Entry(final String type, final int code, final String topFrame) {
+            this.type = type;
+            this.code = code;
+            this.topFrame = topFrame;
+        }
+    }
+
+    private final Map<Long, Entry> entries =
+            new LinkedHashMap<Long, Entry>(CAPACITY, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+                    return size() > CAPACITY;
+                }
+            };
+    private long lastSummaryMs = SystemClock.elapsedRealtime();
+
+    /*
+     * Counts an occurrence, returns true when it is the first one of its kind in the table.
+     */
+    synchronized boolean record(@NonNull final Throwable throwable) {
+        final long fingerprint = fingerprint(throwable);
+        Entry entry = entries.get(fingerprint);
+        final boolean isFirst = (null == entry);
+        if (isFirst) {
+            final StackTraceElement[] frames = throwable.getStackTrace();
+            entry = new Entry(throwable.getClass().getName(),
+                    errorCode(throwable),
+                    (0 < frames.length) ? frames[0].toString() : "");
+            entries.put(fingerprint, entry);
+        }
+        ++entry.count;
+        return isFirst;
+    }
+
+    /*
+     * Once per interval, describes the exceptions repeated since the last summary. Returns null
+     * when it is not time yet or nothing repeated.
+     */
+    @Nullable
+    synchronized String pollSummary() {
+        final long now = SystemClock.elapsedRealtime();
+        if (now - lastSummaryMs < SUMMARY_INTERVAL_MS) {
+            return null;
+        }
+        lastSummaryMs = now;
+        StringBuilder builder = null;
+        for (Entry entry : entries.values()) {
+            // the first occurrence was logged in full, only repeats are summarized
+            final long repeats = entry.count - Math.max(1, entry.summarizedCount);
+            if (0 < repeats) {
+                if (null == builder) {
+                    builder = new StringBuilder("repeated exceptions in the last interval:");
+                }
+                builder.append("\n\t").append(repeats).append("x ").append(entry.type);
+                if (0 != entry.code) {
+                    builder.append(" (").append(entry.code).append(')');
+                }
+                builder.append(" at ").append(entry.topFrame)
+                        .append(", ").append(entry.count).append(" total");
+            }
+            entry.summarizedCount = entry.count;
+        }
+        return (null != builder) ? builder.toString() : null;
+    }
+
+    static long fingerprint(@NonNull final Throwable throwable) {
+        long hash = hash(FNV_OFFSET, throwable.getClass().getName());
+        hash = (hash ^ errorCode(throwable)) * FNV_PRIME;
+        final StackTraceElement[] frames = throwable.getStackTrace();
+        for (int i = 0; i < Math.min(TOP_FRAMES, frames.length); ++i) {
+            hash = hash(hash, frames[i].getClassName());
+            hash = hash(hash, frames[i].getMethodName());
+            hash = (hash ^ frames[i].getLineNumber()) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    private static int errorCode(@NonNull final Throwable throwable) {
+        return (throwable instanceof VoiceException)
+                ? ((VoiceException) throwable).getErrorCode()
+                : 0;
+    }
+
+    private static long hash(long hash, @Nullable final String value) {
+        if (null != value) {
+            for (int i = 0; i < value.length(); ++i) {
+                hash = (hash ^ value.charAt(i)) * FNV_PRIME;
+            }
+        }
+        return hash;
+    }
+}
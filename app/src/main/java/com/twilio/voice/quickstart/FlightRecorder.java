@@ -0,0 +1,139 @@
+package com.twilio.voice.quickstart;
+
+import static com.twilio.voice.quickstart.FlightRecorderFormat.BYTE_ORDER;
+import static com.twilio.voice.quickstart.FlightRecorderFormat.DEFAULT_CAPACITY;
+import static com.twilio.voice.quickstart.FlightRecorderFormat.HEADER_CAPACITY;
+import static com.twilio.voice.quickstart.FlightRecorderFormat.HEADER_MAGIC;
+import static com.twilio.voice.quickstart.FlightRecorderFormat.HEADER_RECORD_SIZE;
+import static com.twilio.voice.quickstart.FlightRecorderFormat.HEADER_VERSION;
+import static com.twilio.voice.quickstart.FlightRecorderFormat.MAGIC;
+import static com.twilio.voice.quickstart.FlightRecorderFormat.RECORD_BOOT_WALL_CLOCK;
+import static com.twilio.voice.quickstart.FlightRecorderFormat.RECORD_CALL_LSB;
+import static com.twilio.voice.quickstart.FlightRecorderFormat.RECORD_CALL_MSB;
+import static com.twilio.voice.quickstart.FlightRecorderFormat.RECORD_EVENT;
+import static com.twilio.voice.quickstart.FlightRecorderFormat.RECORD_EXTRA;
+import static com.twilio.voice.quickstart.FlightRecorderFormat.RECORD_MARKER;
+import static com.twilio.voice.quickstart.FlightRecorderFormat.RECORD_PAYLOAD;
+import static com.twilio.voice.quickstart.FlightRecorderFormat.RECORD_SIZE;
+import static com.twilio.voice.quickstart.FlightRecorderFormat.RECORD_TIMESTAMP;
+import static com.twilio.voice.quickstart.FlightRecorderFormat.VERSION;
+import static com.twilio.voice.quickstart.FlightRecorderFormat.fileSize;
+import static com.twilio.voice.quickstart.FlightRecorderFormat.recordOffset;
+
+import android.content.Context;
+import android.os.Process;
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.twilio.voice.quickstart.FlightRecorderFormat.Event;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process wide flight recorder of call lifecycle events. Records are written into a memory mapped
+ * ring file in app storage, so they survive process death, and recording never allocates or
+ * blocks. Pull the file with adb and decode it with the FlightRecorderDecoder of the tools module.
+ */
+final class FlightRecorder {
+    static final String FILE_NAME = "flight-recorder.bin";
+    private static final Logger log = new Logger(FlightRecorder.class);
+    private static volatile FlightRecorder instance;
+
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private final AtomicLong sequence;
+    // maps elapsed realtime to wall clock time, only valid until the next reboot
+    private final long bootWallClockMillis;
+
+    /*
+     * Maps the ring file, recording is a no-op until this was called.
+     */
+    static synchronized void open(@NonNull final Context context) {
+        if (null != instance) {
+            return;
+        }
+        final File file = new File(context.getFilesDir(), FILE_NAME);
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+             FileChannel channel = randomAccessFile.getChannel()) {
+            // the mapping stays valid once the channel is closed
+            final MappedByteBuffer buffer = channel.map(
+                    FileChannel.MapMode.READ_WRITE, 0, fileSize(DEFAULT_CAPACITY));
+            instance = new FlightRecorder(buffer, DEFAULT_CAPACITY);
+            record(Event.PROCESS_STARTED, null, Process.myPid(), 0);
+        } catch (IOException e) {
+            log.error("failed to open flight recorder: " + e.getMessage());
+        }
+    }
+
+    static void record(@NonNull final Event event, @Nullable final UUID callId) {
+        record(event, callId, 0, 0);
+    }
+
+    static void record(@NonNull final Event event, @Nullable final UUID callId, final int payload) {
+        record(event, callId, payload, 0);
+    }
+
+    static void record(@NonNull final Event event,
+                       @Nullable final UUID callId,
+                       final int payload,
+                       final long extra) {
+        final FlightRecorder recorder = instance;
+        if (null != recorder) {
+            recorder.write(event, callId, payload, extra);
+        }
+    }
+
+    private FlightRecorder(@NonNull final MappedByteBuffer buffer, final int capacity) {
+        buffer.order(BYTE_ORDER);
+        this.buffer = buffer;
+        this.capacity = capacity;
+        if (MAGIC != buffer.getInt(HEADER_MAGIC) ||
+                VERSION != buffer.getInt(HEADER_VERSION) ||
+                RECORD_SIZE != buffer.getInt(HEADER_RECORD_SIZE) ||
+                capacity != buffer.getInt(HEADER_CAPACITY)) {
+            // new or incompatible file, start over
+            for (int i = 0; i < capacity; ++i) {
+                buffer.putLong(recordOffset(i, capacity) + RECORD_MARKER, 0);
+            }
+            buffer.putInt(HEADER_MAGIC, MAGIC);
+            buffer.putInt(HEADER_VERSION, VERSION);
+            buffer.putInt(HEADER_RECORD_SIZE, RECORD_SIZE);
+            buffer.putInt(HEADER_CAPACITY, capacity);
+        }
+        bootWallClockMillis = System.currentTimeMillis() - SystemClock.elapsedRealtime();
+        // continue after the newest record of the previous process
+        long next = 0;
+        for (int i = 0; i < capacity; ++i) {
+            next = Math.max(next, buffer.getLong(recordOffset(i, capacity) + RECORD_MARKER));
+        }
+        this.sequence = new AtomicLong(next);
+    }
+
+    private void write(@NonNull final Event event,
+                       @Nullable final UUID callId,
+                       final int payload,
+                       final long extra) {
+        final long recordSequence = sequence.getAndIncrement();
+        final int offset = recordOffset(recordSequence, capacity);
+        // invalidate the slot first so a record torn by process death is skipped
+        buffer.putLong(offset + RECORD_MARKER, 0);
+        buffer.putLong(offset + RECORD_TIMESTAMP, SystemClock.elapsedRealtimeNanos());
+        buffer.putLong(offset + RECORD_CALL_MSB,
+                (null != callId) ? callId.getMostSignificantBits() : 0);
+        buffer.putLong(offset + RECORD_CALL_LSB,
+                (null != callId) ? callId.getLeastSignificantBits() : 0);
+        buffer.putInt(offset + RECORD_EVENT, event.code);
+        buffer.putInt(offset + RECORD_PAYLOAD, payload);
+        buffer.putLong(offset + RECORD_EXTRA, extra);
+        buffer.putLong(offset + RECORD_BOOT_WALL_CLOCK, bootWallClockMillis);
+        buffer.putLong(offset + RECORD_MARKER, recordSequence + 1);
+    }
+}
@@ -0,0 +1,103 @@
+package com.twilio.voice.quickstart;
+
+import java.nio.ByteOrder;
+
+/**
+ * Layout of the flight recorder file, shared by the on device {@link FlightRecorder} and the JVM
+ * side FlightRecorderDecoder of the tools module, which compiles this file as well; it must not
+ * depend on Android classes.
+ *
+ * The file is a header followed by a ring of fixed width records. A record's marker holds its
+ * sequence number + 1 and is written last, a record whose marker does not match its slot is
+ * incomplete or empty and skipped when decoding. The ring outlives processes and reboots, so
+ * every record carries the clock reference of the process that wrote it.
+ */
+final class FlightRecorderFormat {
+    static final int MAGIC = 0x54564652; // "TVFR"
+    static final int VERSION = 2;
+    static final ByteOrder BYTE_ORDER = ByteOrder.BIG_ENDIAN;
+
+    // header
+    static final int HEADER_MAGIC = 0;
+    static final int HEADER_VERSION = 4;
+    static final int HEADER_RECORD_SIZE = 8;
+    static final int HEADER_CAPACITY = 12;
+    static final int HEADER_SIZE = 64;
+
+    // record
+    static final int RECORD_MARKER = 0;
+    static final int RECORD_TIMESTAMP = 8;
+    static final int RECORD_CALL_MSB = 16;
+    static final int RECORD_CALL_LSB = 24;
+    static final int RECORD_EVENT = 32;
+    static final int RECORD_PAYLOAD = 36;
+    static final int RECORD_EXTRA = 40;
+    // wall clock time (ms) minus elapsed realtime when the writing process opened the file, maps
+    // the timestamp to a date
+    static final int RECORD_BOOT_WALL_CLOCK = 48;
+    static final int RECORD_SIZE = 56;
+
+    static final int DEFAULT_CAPACITY = 8192;
+
+    enum Event {
+        PROCESS_STARTED(1),
+        SERVICE_CREATED(2),
+        SERVICE_DESTROYED(3),
+        REGISTER(10),
+        REGISTER_SKIPPED(11),
+        REGISTERED(12),
+        REGISTRATION_FAILED(13),
+        INCOMING_INVITE(20),
+        DUPLICATE_INVITE(21),
+        CANCELLED_INVITE(22),
+        CONNECT(30),
+        ACCEPT(31),
+        REJECT(32),
+        DISCONNECT(33),
+        MUTE(34),
+        HOLD(35),
+        RINGING(40),
+        CONNECTED(41),
+        CONNECT_FAILURE(42),
+        RECONNECTING(43),
+        RECONNECTED(44),
+        DISCONNECTED(45),
+        QUALITY_WARNINGS(46),
+        CONNECTION_STATE(50),
+        CONNECTION_ANSWER(51),
+        CONNECTION_REJECT(52),
+        CONNECTION_DISCONNECT(53),
+        CONNECTION_ABORT(54),
+        CONNECTION_HOLD(55),
+        CONNECTION_UNHOLD(56);
+
+        private static final Event[] byCode = new Event[64];
+
+        static {
+            for (Event event : values()) {
+                byCode[event.code] = event;
+            }
+        }
+
+        final int code;
+
+        Event(final int code) {
+            this.code = code;
+        }
+
+        static Event fromCode(final int code) {
+            return (0 <= code && code < byCode.length) ? byCode[code] : null;
+        }
+    }
+
+    static long fileSize(final int capacity) {
+        return HEADER_SIZE + (long) capacity * RECORD_SIZE;
+    }
+
+    static int recordOffset(final long sequence, final int capacity) {
+        return HEADER_SIZE + (int) (sequence % capacity) * RECORD_SIZE;
+    }
+
+    private FlightRecorderFormat() {
+    }
+}
@@ -4,9 +4,10 @@ import static com.twilio.voice.quickstart.Constants.ACTION_INCOMING_CALL;
 import static com.twilio.voice.quickstart.Constants.INCOMING_CALL_INVITE;
 import static com.twilio.voice.quickstart.Constants.ACTION_CANCEL_CALL;
 import static com.twilio.voice.quickstart.Constants.CANCELLED_CALL_INVITE;
-import static java.lang.String.format;
 
 import android.content.Intent;
+import android.os.Handler;
+import android.os.Looper;
 
 import androidx.annotation.CallSuper;
 import androidx.annotation.NonNull;
@@ -25,15 +26,17 @@ import com.twilio.voice.Voice;
 
 public class IncomingCallService extends FirebaseMessagingService implements MessageListener {
     private static final Logger log = new Logger(IncomingCallService.class);
+    private long messageReceivedNanos;
 
     @Override
     public void onMessageReceived(RemoteMessage remoteMessage) {
+        messageReceivedNanos = CallSetupMetrics.now();
         log.debug("🔥 [INCOMING] FCM Message Received!");
-        log.debug(format(
-                "🔥 [INCOMING] Firebase message details:\n\tmessage data: %s\n\tfrom: %s\n\tmessage id: %s",
+        log.debug(
+                "🔥 [INCOMING] Firebase message details:\n\tmessage data: {}\n\tfrom: {}\n\tmessage id: {}",
                 remoteMessage.getData(),
                 remoteMessage.getFrom(),
-                remoteMessage.getMessageId()));
+                remoteMessage.getMessageId());
 
         // Check if message contains a data payload.
         if (remoteMessage.getData().isEmpty()) {
@@ -44,7 +47,7 @@ public class IncomingCallService extends FirebaseMessagingService implements Mes
         log.debug("🔥 [INCOMING] Processing message with Voice SDK...");
         boolean isHandled = Voice.handleMessage(this, remoteMessage.getData(), this);
         if (!isHandled) {
-            log.error(format("🔥 [INCOMING] ERROR: Message was not a valid Twilio Voice SDK payload: %s", remoteMessage.getData()));
+            log.error("🔥 [INCOMING] ERROR: Message was not a valid Twilio Voice SDK payload: {}", remoteMessage.getData());
         } else {
             log.debug("🔥 [INCOMING] SUCCESS: Message was handled by Voice SDK");
         }
@@ -53,35 +56,55 @@ public class IncomingCallService extends FirebaseMessagingService implements Mes
     @CallSuper
     @Override
     public void onNewToken(@NonNull String token) {
-        log.debug("🔥 [INCOMING] FCM Token Updated: " + token.substring(0, Math.min(50, token.length())) + "...");
+        log.debug(() -> "🔥 [INCOMING] FCM Token Updated: " + token.substring(0, Math.min(50, token.length())) + "...");
+        // the ledger must not skip registering the new token, even if the process dies first
+        new RegistrationLedger(this).forceRegistration();
+        new Handler(Looper.getMainLooper()).post(() ->
+                VoiceApplication.voiceService(voiceService ->
+                        voiceService.registerFCMToken(token)));
     }
 
     @Override
     public void onCallInvite(@NonNull CallInvite callInvite) {
+        final CallSetupMetrics.Trace setupTrace =
+                CallSetupMetrics.startIncomingTrace(callInvite.getCallSid(), messageReceivedNanos);
         log.debug("🔥 [INCOMING] *** CALL INVITE RECEIVED! ***");
-        log.debug(format("🔥 [INCOMING] Call details:\n\tFrom: %s\n\tTo: %s\n\tCall SID: %s", 
+        log.debug("🔥 [INCOMING] Call details:\n\tFrom: {}\n\tTo: {}\n\tCall SID: {}",
                 callInvite.getFrom(),
                 callInvite.getTo(),
-                callInvite.getCallSid()));
-        
-        startVoiceService(
-                ACTION_INCOMING_CALL,
-                new Pair<>(INCOMING_CALL_INVITE, callInvite));
-        
-        log.debug("🔥 [INCOMING] Started VoiceService with ACTION_INCOMING_CALL");
+                callInvite.getCallSid());
+
+        // hand the invite straight to a running service, otherwise start it with an Intent
+        setupTrace.setHandoff(CallSetupMetrics.Handoff.DIRECT);
+        if (VoiceService.handOffIncomingCall(callInvite)) {
+            CallSetupMetrics.recordHandoff(CallSetupMetrics.Handoff.DIRECT);
+            log.debug("🔥 [INCOMING] Handed invite to running VoiceService");
+        } else {
+            setupTrace.setHandoff(CallSetupMetrics.Handoff.INTENT);
+            CallSetupMetrics.recordHandoff(CallSetupMetrics.Handoff.INTENT);
+            startVoiceService(
+                    ACTION_INCOMING_CALL,
+                    new Pair<>(INCOMING_CALL_INVITE, callInvite));
+            log.debug("🔥 [INCOMING] Started VoiceService with ACTION_INCOMING_CALL");
+        }
     }
 
     @Override
     public void onCancelledCallInvite(@NonNull CancelledCallInvite cancelledCallInvite,
                                       @Nullable CallException callException) {
-        log.debug("🔥 [INCOMING] Call Cancelled - Call SID: " + cancelledCallInvite.getCallSid());
+        log.debug("🔥 [INCOMING] Call Cancelled - Call SID: {}", cancelledCallInvite.getCallSid());
         if (callException != null) {
             log.error("🔥 [INCOMING] Call cancellation exception: " + callException.getMessage());
         }
-        
-        startVoiceService(
-                ACTION_CANCEL_CALL,
-                new Pair<>(CANCELLED_CALL_INVITE, cancelledCallInvite));
+
+        if (VoiceService.handOffCancelledCall(cancelledCallInvite)) {
+            CallSetupMetrics.recordHandoff(CallSetupMetrics.Handoff.DIRECT);
+        } else {
+            CallSetupMetrics.recordHandoff(CallSetupMetrics.Handoff.INTENT);
+            startVoiceService(
+                    ACTION_CANCEL_CALL,
+                    new Pair<>(CANCELLED_CALL_INVITE, cancelledCallInvite));
+        }
     }
 
     @SafeVarargs
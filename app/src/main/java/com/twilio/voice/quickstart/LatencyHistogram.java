@@ -0,0 +1,103 @@
+package com.twilio.voice.quickstart;
+
+import static java.lang.String.format;
+
+import androidx.annotation.NonNull;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock free log-linear histogram of microsecond latencies. Every power of two range is split in
+ * 16 linear sub-buckets, giving ~6% precision from 1us up to ~12 days, recording never allocates.
+ */
+class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_SHIFT = 36;
+    private static final int BUCKET_COUNT = SUB_BUCKET_COUNT * (MAX_SHIFT + 2);
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    void recordMicros(final long micros) {
+        final long value = Math.max(0, micros);
+        buckets.incrementAndGet(bucketIndex(value));
+        count.incrementAndGet();
+        long max = maxMicros.get();
+        while (value > max && !maxMicros.compareAndSet(max, value)) {
+            max = maxMicros.get();
+        }
+    }
+
+    void recordNanos(final long nanos) {
+        recordMicros(nanos / 1000);
+    }
+
+    long getCount() {
+        return count.get();
+    }
+
+    long getMaxMicros() {
+        return maxMicros.get();
+    }
+
+    /*
+     * Returns the value at the given percentile (0-100], resolved to the middle of the bucket
+     * holding it and capped at the largest recorded value.
+     */
+    long getPercentileMicros(final double percentile) {
+        final long samples = count.get();
+        if (0 == samples) {
+            return 0;
+        }
+        final long rank = Math.max(1, (long) Math.ceil(samples * Math.min(percentile, 100.0) / 100.0));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; ++i) {
+            seen += buckets.get(i);
+            if (seen >= rank) {
+                final long lower = bucketLowerBound(i);
+                final long upper = bucketLowerBound(i + 1);
+                return Math.min(lower + (upper - lower) / 2, maxMicros.get());
+            }
+        }
+        return maxMicros.get();
+    }
+
+    /*
+     * Count, percentiles and maximum, in milliseconds.
+     */
+    @NonNull
+    @Override
+    public String toString() {
+        return format(Locale.US, "n=%d p50=%.1f p90=%.1f p99=%.1f max=%.1f",
+                getCount(),
+                getPercentileMicros(50) / 1e3,
+                getPercentileMicros(90) / 1e3,
+                getPercentileMicros(99) / 1e3,
+                getMaxMicros() / 1e3);
+    }
+
+    private static int bucketIndex(final long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        final int shift = (63 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+        if (shift > MAX_SHIFT) {
+            return BUCKET_COUNT - 1;
+        }
+        final int subBucket = (int) (value >>> shift) - SUB_BUCKET_COUNT;
+        return SUB_BUCKET_COUNT + shift * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    private static long bucketLowerBound(final int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        final int shift = (index - SUB_BUCKET_COUNT) / SUB_BUCKET_COUNT;
+        final int subBucket = (index - SUB_BUCKET_COUNT) % SUB_BUCKET_COUNT;
+        return ((long) (SUB_BUCKET_COUNT + subBucket)) << shift;
+    }
+}
@@ -1,74 +1,418 @@
 package com.twilio.voice.quickstart;
 
+import android.os.Process;
 import android.util.Log;
 
-import java.io.IOException;
-import java.io.OutputStream;
-import java.io.PrintStream;
-import java.nio.charset.Charset;
-import java.util.Vector;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Asynchronous logger. The level is checked before a message is built, templates take their
+ * arguments without formatting them up front, and messages are copied into a preallocated ring of
+ * character slots which a background thread drains to android.util.Log. Logging never blocks the
+ * caller: when the ring is full the message is dropped and counted. Exceptions are fingerprinted,
+ * only the first of a kind is logged with its stack trace and repeats are summarized periodically.
+ * A claimed slot is always published, even when formatting the message fails, since the drainer
+ * waits for the slots in order.
+ */
+class Logger {
+  /*
+   * Deferred message, only built when the level is enabled.
+   */
+  interface Message {
+    String get();
+  }
+
+  // must be a power of two
+  private static final int SLOT_COUNT = 256;
+  private static final int SLOT_MASK = SLOT_COUNT - 1;
+  private static final int MAX_MESSAGE_LENGTH = 1024;
+  private static final int MAX_CAUSE_DEPTH = 8;
+  private static final String PLACEHOLDER = "{}";
+  private static final String TRUNCATED = "...";
+
+  private static final char[][] slotChars = new char[SLOT_COUNT][MAX_MESSAGE_LENGTH];
+  private static final int[] slotLengths = new int[SLOT_COUNT];
+  private static final int[] slotLevels = new int[SLOT_COUNT];
+  private static final String[] slotTags = new String[SLOT_COUNT];
+  // holds sequence + 1 once the record with that sequence is written to the slot
+  private static final AtomicLongArray published = new AtomicLongArray(SLOT_COUNT);
+  private static final AtomicLong claimed = new AtomicLong();
+  private static final AtomicLong consumed = new AtomicLong();
+  private static final AtomicLong dropped = new AtomicLong();
+  private static final ExceptionAggregator exceptions = new ExceptionAggregator();
+  private static volatile int minLevel = BuildConfig.DEBUG ? Log.DEBUG : Log.INFO;
+  private static volatile boolean isDrainerParked = false;
+  private static final Thread drainer = new Thread(Logger::drain, "LoggerDrain");
+
+  static {
+    drainer.setDaemon(true);
+    drainer.start();
+  }
 
-class Logger extends OutputStream {
   private final String logTag;
-  private final Vector<Character> logInfoBuffer = new Vector<>();
+
   public Logger(Class<?> clazz) {
     logTag = clazz.getSimpleName();
   }
 
+  static void setMinLevel(final int level) {
+    minLevel = level;
+  }
+
+  boolean isLoggable(final int level) {
+    // debug output never reaches release builds, whatever the minimum level
+    return level >= minLevel && (Log.DEBUG < level || BuildConfig.DEBUG);
+  }
+
   public void debug(final String message) {
-    if (BuildConfig.DEBUG) {
-      Log.d(logTag, message);
+    if (isLoggable(Log.DEBUG)) {
+      write(Log.DEBUG, message, 0, null, null, null);
+    }
+  }
+
+  public void debug(final Message message) {
+    if (isLoggable(Log.DEBUG)) {
+      write(Log.DEBUG, message.get(), 0, null, null, null);
+    }
+  }
+
+  public void debug(final String template, final long arg) {
+    if (isLoggable(Log.DEBUG)) {
+      write(Log.DEBUG, template, arg, 0);
+    }
+  }
+
+  public void debug(final String template, final long arg0, final long arg1) {
+    if (isLoggable(Log.DEBUG)) {
+      write(Log.DEBUG, template, arg0, arg1);
+    }
+  }
+
+  public void debug(final String template, final Object arg) {
+    if (isLoggable(Log.DEBUG)) {
+      write(Log.DEBUG, template, 1, arg, null, null);
+    }
+  }
+
+  public void debug(final String template, final Object arg0, final Object arg1) {
+    if (isLoggable(Log.DEBUG)) {
+      write(Log.DEBUG, template, 2, arg0, arg1, null);
+    }
+  }
+
+  public void debug(final String template,
+                    final Object arg0,
+                    final Object arg1,
+                    final Object arg2) {
+    if (isLoggable(Log.DEBUG)) {
+      write(Log.DEBUG, template, 3, arg0, arg1, arg2);
     }
   }
 
   public void log(final String message) {
-    Log.i(logTag, message);
+    if (isLoggable(Log.INFO)) {
+      write(Log.INFO, message, 0, null, null, null);
+    }
   }
 
   public void warning(final String message) {
-    try {
-      write(message.getBytes());
-      flush();
-    } catch (Exception ignore) {}
+    if (isLoggable(Log.WARN)) {
+      write(Log.WARN, message, 0, null, null, null);
+    }
+  }
+
+  public void warning(final String template, final Object arg) {
+    if (isLoggable(Log.WARN)) {
+      write(Log.WARN, template, 1, arg, null, null);
+    }
+  }
+
+  public void warning(final String template, final Object arg0, final Object arg1) {
+    if (isLoggable(Log.WARN)) {
+      write(Log.WARN, template, 2, arg0, arg1, null);
+    }
   }
 
   public void error(final String message) {
-    Log.e(logTag, message);
+    if (isLoggable(Log.ERROR)) {
+      write(Log.ERROR, message, 0, null, null, null);
+    }
+  }
+
+  public void error(final String template, final Object arg) {
+    if (isLoggable(Log.ERROR)) {
+      write(Log.ERROR, template, 1, arg, null, null);
+    }
+  }
+
+  public void error(final String template, final Object arg0, final Object arg1) {
+    if (isLoggable(Log.ERROR)) {
+      write(Log.ERROR, template, 2, arg0, arg1, null);
+    }
   }
 
   public void warning(final Exception e, final String message) {
-    PrintStream printStream = new PrintStream(this);
-    printStream.println(message);
-    e.printStackTrace(printStream);
-    printStream.flush();
+    // repeats of a known exception are only counted
+    if (!isLoggable(Log.WARN) || !exceptions.record(e)) {
+      return;
+    }
+    // the trace is packed into as few records as fit, one line per frame
+    final StackTraceWriter writer = new StackTraceWriter(logTag);
+    try {
+      writer.line(message + " [" + Long.toHexString(ExceptionAggregator.fingerprint(e)) + "]");
+      Throwable throwable = e;
+      for (int depth = 0; null != throwable && depth < MAX_CAUSE_DEPTH; ++depth) {
+        writer.line((0 == depth) ? throwable.toString() : "Caused by: " + throwable);
+        for (StackTraceElement frame : throwable.getStackTrace()) {
+          writer.line("\tat " + frame);
+        }
+        throwable = (throwable.getCause() != throwable) ? throwable.getCause() : null;
+      }
+    } catch (RuntimeException formatException) {
+      // e.g. a getMessage() override throwing
+      writer.fail(formatException);
+    } finally {
+      writer.finish();
+    }
   }
 
-  @Override
-  public synchronized void write(int i) throws IOException {
-    logInfoBuffer.add((char)i);
+  private void write(final int level,
+                     final String template,
+                     final int argCount,
+                     final Object arg0,
+                     final Object arg1,
+                     final Object arg2) {
+    final long sequence = claim();
+    if (0 > sequence) {
+      return;
+    }
+    final char[] buffer = slotChars[(int) (sequence & SLOT_MASK)];
+    final String text = (null != template) ? template : "null";
+    int position = 0;
+    int publishedLevel = level;
+    try {
+      int start = 0;
+      for (int arg = 0; arg < argCount; ++arg) {
+        final int placeholder = text.indexOf(PLACEHOLDER, start);
+        if (0 > placeholder) {
+          break;
+        }
+        position = append(buffer, position, text, start, placeholder);
+        final Object value = (0 == arg) ? arg0 : (1 == arg) ? arg1 : arg2;
+        position = append(buffer, position,
+            (value instanceof CharSequence) ? (CharSequence) value : String.valueOf(value));
+        start = placeholder + PLACEHOLDER.length();
+      }
+      position = append(buffer, position, text, start, text.length());
+    } catch (RuntimeException e) {
+      // an argument's toString() threw, log that instead of losing the slot
+      position = appendFormatFailure(buffer, text, e);
+      publishedLevel = Log.ERROR;
+    } finally {
+      publish(sequence, publishedLevel, logTag, position);
+    }
   }
 
-  @Override
-  public synchronized void write(byte[] b) throws IOException {
-    for (char c: (new String(b, Charset.defaultCharset()).toCharArray())) {
-      logInfoBuffer.add(c);
+  private void write(final int level, final String template, final long arg0, final long arg1) {
+    final long sequence = claim();
+    if (0 > sequence) {
+      return;
+    }
+    final char[] buffer = slotChars[(int) (sequence & SLOT_MASK)];
+    final String text = (null != template) ? template : "null";
+    int position = 0;
+    try {
+      int start = 0;
+      for (int arg = 0; arg < 2; ++arg) {
+        final int placeholder = text.indexOf(PLACEHOLDER, start);
+        if (0 > placeholder) {
+          break;
+        }
+        position = append(buffer, position, text, start, placeholder);
+        position = append(buffer, position, (0 == arg) ? arg0 : arg1);
+        start = placeholder + PLACEHOLDER.length();
+      }
+      position = append(buffer, position, text, start, text.length());
+    } finally {
+      publish(sequence, level, logTag, position);
+    }
+  }
+
+  /*
+   * Reserves the next slot, returns -1 instead of waiting when the ring is full.
+   */
+  private static long claim() {
+    while (true) {
+      final long sequence = claimed.get();
+      if (sequence - consumed.get() >= SLOT_COUNT) {
+        dropped.incrementAndGet();
+        return -1;
+      }
+      if (claimed.compareAndSet(sequence, sequence + 1)) {
+        return sequence;
+      }
+    }
+  }
+
+  private static void publish(final long sequence,
+                              final int level,
+                              final String tag,
+                              final int length) {
+    final int slot = (int) (sequence & SLOT_MASK);
+    slotLevels[slot] = level;
+    slotTags[slot] = tag;
+    slotLengths[slot] = length;
+    published.set(slot, sequence + 1);
+    if (isDrainerParked) {
+      LockSupport.unpark(drainer);
     }
   }
 
-  @Override
-  public void write(byte[] b, int off, int len) throws IOException {
-    for (char c: (new String(b, off, len, Charset.defaultCharset()).toCharArray())) {
-      logInfoBuffer.add(c);
+  private static int append(final char[] buffer,
+                            final int position,
+                            final CharSequence text,
+                            final int start,
+                            final int end) {
+    final int room = MAX_MESSAGE_LENGTH - position;
+    if (end - start <= room) {
+      for (int i = start; i < end; ++i) {
+        buffer[position + i - start] = text.charAt(i);
+      }
+      return position + end - start;
+    }
+    // truncate, without splitting a surrogate pair
+    int kept = Math.max(0, room - TRUNCATED.length());
+    if (0 < kept && Character.isHighSurrogate(text.charAt(start + kept - 1))) {
+      --kept;
+    }
+    for (int i = 0; i < kept; ++i) {
+      buffer[position + i] = text.charAt(start + i);
+    }
+    int truncatedEnd = position + kept;
+    for (int i = 0; i < TRUNCATED.length() && truncatedEnd < MAX_MESSAGE_LENGTH; ++i) {
+      buffer[truncatedEnd++] = TRUNCATED.charAt(i);
     }
+    return truncatedEnd;
   }
 
-  @Override
-  public synchronized void flush() throws IOException {
-    char [] output = new char[logInfoBuffer.size()];
-    for (int i = 0; i < logInfoBuffer.size(); ++i) {
-      output[i] = logInfoBuffer.get(i);
+  private static int append(final char[] buffer, final int position, final CharSequence text) {
+    return append(buffer, position, text, 0, text.length());
+  }
+
+  /*
+   * Replaces a message that failed to format with the failure and its template.
+   */
+  private static int appendFormatFailure(final char[] buffer,
+                                         final String template,
+                                         final RuntimeException e) {
+    int position = append(buffer, 0, "failed to format log message (");
+    position = append(buffer, position, e.getClass().getName());
+    position = append(buffer, position, "): ");
+    return append(buffer, position, template);
+  }
+
+  private static int append(final char[] buffer, final int position, final long value) {
+    if (Long.MIN_VALUE == value) {
+      return append(buffer, position, "-9223372036854775808");
+    }
+    // count the digits, then write them back to front
+    long remaining = Math.abs(value);
+    int digits = 1;
+    for (long scale = 10; digits < 19 && remaining >= scale; scale *= 10) {
+      ++digits;
+    }
+    final int length = digits + ((0 > value) ? 1 : 0);
+    if (position + length > MAX_MESSAGE_LENGTH) {
+      return position;
+    }
+    int index = position + length;
+    do {
+      buffer[--index] = (char) ('0' + remaining % 10);
+      remaining /= 10;
+    } while (0 != remaining);
+    if (0 > value) {
+      buffer[--index] = '-';
+    }
+    return position + length;
+  }
+
+  private static void drain() {
+    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+    long reportedDrops = 0;
+    while (true) {
+      final long sequence = consumed.get();
+      final int slot = (int) (sequence & SLOT_MASK);
+      if (published.get(slot) == sequence + 1) {
+        Log.println(slotLevels[slot],
+            slotTags[slot],
+            new String(slotChars[slot], 0, slotLengths[slot]));
+        slotTags[slot] = null;
+        consumed.set(sequence + 1);
+        continue;
+      }
+      final long drops = dropped.get();
+      if (drops != reportedDrops) {
+        Log.w(Logger.class.getSimpleName(), (drops - reportedDrops) + " log messages dropped");
+        reportedDrops = drops;
+      }
+      final String summary = exceptions.pollSummary();
+      if (null != summary) {
+        Log.w(Logger.class.getSimpleName(), summary);
+      }
+      // re-check after announcing the park so a concurrent publish cannot be missed
+      isDrainerParked = true;
+      if (published.get(slot) != sequence + 1) {
+        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(100));
+      }
+      isDrainerParked = false;
+    }
+  }
+
+  /*
+   * Packs the lines of a stack trace into consecutive records.
+   */
+  private static class StackTraceWriter {
+    private final String tag;
+    private long sequence = -1;
+    private int position;
+    private int level = Log.WARN;
+
+    StackTraceWriter(final String tag) {
+      this.tag = tag;
+    }
+
+    void line(final String line) {
+      if (0 <= sequence && position + 1 + line.length() > MAX_MESSAGE_LENGTH) {
+        finish();
+      }
+      if (0 > sequence) {
+        sequence = claim();
+        position = 0;
+        if (0 > sequence) {
+          return;
+        }
+      } else {
+        slotChars[(int) (sequence & SLOT_MASK)][position++] = '\n';
+      }
+      position = append(slotChars[(int) (sequence & SLOT_MASK)], position, line);
+    }
+
+    /*
+     * Ends the trace with the exception that interrupted it, the record is logged as an error.
+     */
+    void fail(final RuntimeException e) {
+      level = Log.ERROR;
+      line("failed to format stack trace (" + e.getClass().getName() + ")");
+    }
+
+    void finish() {
+      if (0 <= sequence) {
+        publish(sequence, level, tag, position);
+        sequence = -1;
+      }
     }
-    logInfoBuffer.clear();
-    Log.w(logTag, String.valueOf(output));
   }
 }
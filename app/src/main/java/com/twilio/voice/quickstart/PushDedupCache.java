@@ -0,0 +1,121 @@
+package com.twilio.voice.quickstart;
+
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded, time windowed LRU of the push events seen per CallSid. FCM may redeliver or reorder
+ * messages; duplicate invites are dropped and a cancel arriving before its invite is kept as a
+ * tombstone so the late invite is suppressed. An invite can ring for longer than the window, so
+ * the cache only decides for CallSids without a live call record. Not thread safe, it is only
+ * used from the call control thread; the counters can be read from any thread.
+ */
+class PushDedupCache {
+    static final int DEFAULT_CAPACITY = 64;
+    static final long DEFAULT_WINDOW_MS = TimeUnit.MINUTES.toMillis(2);
+
+    private enum State {
+        INVITED,
+        CANCELLED
+    }
+
+    private static class Entry {
+        State state;
+        long timestamp;
+
+        Entry(final State state, final long timestamp) {
+            this.state = state;
+            this.timestamp = timestamp;
+        }
+    }
+
+    private final long windowMs;
+    private final Map<String, Entry> entries;
+    private final AtomicLong droppedDuplicates = new AtomicLong();
+    private final AtomicLong suppressedInvites = new AtomicLong();
+    private final AtomicLong earlyCancels = new AtomicLong();
+
+    PushDedupCache() {
+        this(DEFAULT_CAPACITY, DEFAULT_WINDOW_MS);
+    }
+
+    PushDedupCache(final int capacity, final long windowMs) {
+        this.windowMs = windowMs;
+        this.entries = new LinkedHashMap<String, Entry>(capacity, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /*
+     * Returns whether an invite is new and should be handled.
+     */
+    boolean acceptInvite(@NonNull final String callSid) {
+        final long now = SystemClock.elapsedRealtime();
+        final Entry entry = liveEntry(callSid, now);
+        if (null == entry) {
+            entries.put(callSid, new Entry(State.INVITED, now));
+            return true;
+        }
+        if (State.INVITED == entry.state) {
+            droppedDuplicates.incrementAndGet();
+        } else {
+            suppressedInvites.incrementAndGet();
+        }
+        return false;
+    }
+
+    /*
+     * Records a cancel that matched a ringing invite, later copies of the invite or the cancel
+     * are dropped.
+     */
+    void cancelled(@NonNull final String callSid) {
+        entries.put(callSid, new Entry(State.CANCELLED, SystemClock.elapsedRealtime()));
+    }
+
+    /*
+     * Records a cancel without a ringing invite: a duplicate of an earlier cancel, or one that
+     * overtook its invite and is tombstoned so the late invite is suppressed.
+     */
+    void unmatchedCancel(@NonNull final String callSid) {
+        final long now = SystemClock.elapsedRealtime();
+        final Entry entry = liveEntry(callSid, now);
+        if (null != entry && State.CANCELLED == entry.state) {
+            droppedDuplicates.incrementAndGet();
+            return;
+        }
+        if (null == entry) {
+            earlyCancels.incrementAndGet();
+        }
+        // an invite already answered or rejected is tombstoned as well
+        entries.put(callSid, new Entry(State.CANCELLED, now));
+    }
+
+    /*
+     * Counters for the service's log.
+     */
+    @NonNull
+    @Override
+    public String toString() {
+        return "droppedDuplicates=" + droppedDuplicates.get()
+                + " suppressedInvites=" + suppressedInvites.get()
+                + " earlyCancels=" + earlyCancels.get();
+    }
+
+    private Entry liveEntry(@NonNull final String callSid, final long now) {
+        final Entry entry = entries.get(callSid);
+        if (null != entry && now - entry.timestamp > windowMs) {
+            entries.remove(callSid);
+            return null;
+        }
+        return entry;
+    }
+}
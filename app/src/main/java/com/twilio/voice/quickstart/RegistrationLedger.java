@@ -0,0 +1,126 @@
+package com.twilio.voice.quickstart;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import androidx.annotation.NonNull;
+
+import org.json.JSONObject;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Remembers the last successful Voice.register so it can be skipped while the identity, FCM token
+ * and push credential are unchanged and the registration is younger than its TTL. Only a digest of
+ * the registration is persisted, never the tokens themselves.
+ */
+class RegistrationLedger {
+    private static final Logger log = new Logger(RegistrationLedger.class);
+    private static final String PREFERENCES_NAME = "registration-ledger";
+    private static final String KEY_FINGERPRINT = "fingerprint";
+    private static final String KEY_REGISTERED_AT = "registered-at";
+    private static final String KEY_FORCE = "force";
+    private static final String KEY_AVOIDED = "avoided";
+    // registrations are renewed at least this often even when nothing changed
+    static final long REGISTRATION_TTL_MS = TimeUnit.HOURS.toMillis(24);
+    static final long INITIAL_RETRY_DELAY_MS = TimeUnit.SECONDS.toMillis(2);
+    static final long MAX_RETRY_DELAY_MS = TimeUnit.MINUTES.toMillis(5);
+    static final int MAX_RETRIES = 6;
+
+    private final SharedPreferences preferences;
+    private int failures;
+
+    RegistrationLedger(@NonNull final Context context) {
+        this(context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE));
+    }
+
+    RegistrationLedger(@NonNull final SharedPreferences preferences) {
+        this.preferences = preferences;
+    }
+
+    /*
+     * Returns whether the registration has to be sent, counting it as avoided when it does not.
+     */
+    synchronized boolean shouldRegister(@NonNull final String fingerprint) {
+        final long registeredAt = preferences.getLong(KEY_REGISTERED_AT, 0);
+        final long age = System.currentTimeMillis() - registeredAt;
+        if (preferences.getBoolean(KEY_FORCE, false) ||
+                !fingerprint.equals(preferences.getString(KEY_FINGERPRINT, null)) ||
+                age < 0 ||
+                age >= REGISTRATION_TTL_MS) {
+            return true;
+        }
+        preferences.edit().putLong(KEY_AVOIDED, getAvoidedCount() + 1).apply();
+        return false;
+    }
+
+    synchronized void recordSuccess(@NonNull final String fingerprint) {
+        failures = 0;
+        preferences.edit()
+                .putString(KEY_FINGERPRINT, fingerprint)
+                .putLong(KEY_REGISTERED_AT, System.currentTimeMillis())
+                .putBoolean(KEY_FORCE, false)
+                .apply();
+    }
+
+    /*
+     * Forgets the last registration and returns the delay before retrying it, or -1 once the
+     * retries are exhausted.
+     */
+    synchronized long recordFailure() {
+        preferences.edit().remove(KEY_FINGERPRINT).remove(KEY_REGISTERED_AT).apply();
+        if (++failures > MAX_RETRIES) {
+            failures = 0;
+            return -1;
+        }
+        return Math.min(MAX_RETRY_DELAY_MS, INITIAL_RETRY_DELAY_MS << (failures - 1));
+    }
+
+    /*
+     * Makes the next registration go through regardless of the ledger, e.g. for a new FCM token.
+     */
+    synchronized void forceRegistration() {
+        preferences.edit().putBoolean(KEY_FORCE, true).apply();
+    }
+
+    synchronized long getAvoidedCount() {
+        return preferences.getLong(KEY_AVOIDED, 0);
+    }
+
+    /*
+     * Digest of everything a registration depends on: the identity and push credential granted by
+     * the access token and the FCM token.
+     */
+    @NonNull
+    static String fingerprint(@NonNull final String accessToken, @NonNull final String fcmToken) {
+        String identity = "";
+        String pushCredential = "";
+        final JSONObject claims = AccessTokenManager.parseClaims(accessToken);
+        if (null != claims) {
+            final JSONObject grants = claims.optJSONObject("grants");
+            if (null != grants) {
+                identity = grants.optString("identity");
+                final JSONObject voice = grants.optJSONObject("voice");
+                if (null != voice) {
+                    pushCredential = voice.optString("push_credential_sid");
+                }
+            }
+        }
+        final String registration = identity + '\n' + pushCredential + '\n' + fcmToken;
+        try {
+            final byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(registration.getBytes(StandardCharsets.UTF_8));
+            final StringBuilder builder = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                builder.append(Character.forDigit((b >> 4) & 0xf, 16))
+                        .append(Character.forDigit(b & 0xf, 16));
+            }
+            return builder.toString();
+        } catch (Exception e) {
+            log.error("failed to digest registration: " + e.getMessage());
+            return registration;
+        }
+    }
+}
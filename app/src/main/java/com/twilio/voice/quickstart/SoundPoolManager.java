@@ -4,21 +4,42 @@ import android.annotation.SuppressLint;
 import android.content.Context;
 import android.media.AudioManager;
 import android.media.SoundPool;
+import android.os.SystemClock;
 
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
-import static android.content.Context.AUDIO_SERVICE;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.TaskCompletionSource;
 
-import static java.lang.String.format;
+import static android.content.Context.AUDIO_SERVICE;
 
-import java.util.HashMap;
+import java.util.EnumMap;
 import java.util.Map;
 import java.util.Objects;
 
+/**
+ * Process wide sound bank, loaded once when the application starts. A sound requested while its
+ * sample is still loading is queued and starts as soon as loading completes, the time from
+ * request to playback start is measured. Every sound owns its stream so overlapping cues, e.g. a
+ * disconnect tone over a looping ringer, neither drop nor stop each other.
+ */
 @SuppressLint("DefaultLocale")
 class SoundPoolManager {
     enum Sound {
-        RINGER,
-        DISCONNECT
+        RINGER(R.raw.incoming, true, 1),
+        DISCONNECT(R.raw.disconnect, false, 2);
+
+        final int resource;
+        final boolean loop;
+        // when the pool runs out of streams the lowest priority stream is stopped
+        final int priority;
+
+        Sound(final int resource, final boolean loop, final int priority) {
+            this.resource = resource;
+            this.loop = loop;
+            this.priority = priority;
+        }
     }
 
     enum SoundState {
@@ -29,105 +50,220 @@ class SoundPoolManager {
     }
 
     private static class SoundRecord {
+        private static final long NOT_PENDING = -1;
+        private static final int NO_STREAM = 0;
         final int id;
-        final boolean loop;
         SoundState state;
+        // stream of the last playback of this sound, 0 when there is none
+        int streamId = NO_STREAM;
+        // time playback was requested while loading, with the callback to run once started
+        long pendingSinceNanos = NOT_PENDING;
+        Runnable onStarted;
 
-        public SoundRecord(Context context,
-                           SoundPool soundPool,
-                           final int resource,
-                           final boolean loop) {
+        public SoundRecord(Context context, SoundPool soundPool, final int resource) {
             this.id = soundPool.load(context, resource, 1);
             this.state = SoundState.LOADING;
-            this.loop = loop;
+        }
+
+        boolean isPending() {
+            return NOT_PENDING != pendingSinceNanos;
         }
     }
 
+    static final int DEFAULT_MAX_STREAMS = 3;
     private static final Logger log = new Logger(SoundPoolManager.class);
-    private final float volume;
+    private static SoundPoolManager instance;
+    private final AudioManager audioManager;
     private final SoundPool soundPool;
+    private final TaskCompletionSource<Void> readiness = new TaskCompletionSource<>();
+    private final LatencyHistogram playLatency = new LatencyHistogram();
+    private final Map<Sound, SoundRecord> soundBank = new EnumMap<>(Sound.class);
+    private boolean isReleased = false;
 
-    private Map<Sound, SoundRecord> soundBank;
-    private int lastActiveAudioStreamId;
+    /*
+     * Returns the process wide instance, the first call starts loading the sound bank.
+     */
+    static SoundPoolManager getInstance(@NonNull final Context context) {
+        return getInstance(context, DEFAULT_MAX_STREAMS);
+    }
 
-    SoundPoolManager(final Context context) {
+    /*
+     * As above, the stream pool size only applies to the call creating the instance.
+     */
+    static synchronized SoundPoolManager getInstance(@NonNull final Context context,
+                                                     final int maxStreams) {
+        if (null == instance) {
+            instance = new SoundPoolManager(context.getApplicationContext(), maxStreams);
+        }
+        return instance;
+    }
+
+    private SoundPoolManager(final Context context, final int maxStreams) {
         // construct sound pool
-        soundPool = new SoundPool.Builder().setMaxStreams(1).build();
-        soundPool.setOnLoadCompleteListener((soundPool, sampleId, status) -> {
-            for (Map.Entry<Sound, SoundRecord> entry : soundBank.entrySet()) {
-                final SoundRecord record = entry.getValue();
-                if (record.id == sampleId) {
-                    record.state = (0 == status) ? SoundState.READY : SoundState.ERROR;
-                    if (0 != status) {
-                        log.error(
-                                format("Failed to load sound %s, error: %d",
-                                        entry.getKey().name(), status));
-                    }
-                }
-            }
-        });
+        soundPool = new SoundPool.Builder().setMaxStreams(maxStreams).build();
+        soundPool.setOnLoadCompleteListener((soundPool, sampleId, status) ->
+                onLoadComplete(sampleId, status));
 
         // construct sound bank & load
-        soundBank = new HashMap<>() {{
-            put(Sound.RINGER, new SoundRecord(context, soundPool, R.raw.incoming, true));
-            put(Sound.DISCONNECT, new SoundRecord(context, soundPool, R.raw.disconnect, false));
-        }};
+        synchronized (this) {
+            for (Sound sound : Sound.values()) {
+                soundBank.put(sound, new SoundRecord(context, soundPool, sound.resource));
+            }
+        }
 
-        // no active stream
-        lastActiveAudioStreamId = -1;
+        // AudioManager for reading the volume when playback starts
+        audioManager = (AudioManager) context.getSystemService(AUDIO_SERVICE);
+    }
+
+    /*
+     * Completes once every sound finished loading, fails if any of them could not be loaded.
+     */
+    Task<Void> whenReady() {
+        return readiness.getTask();
+    }
+
+    synchronized boolean isReady() {
+        for (SoundRecord record : soundBank.values()) {
+            if (SoundState.LOADING == record.state || SoundState.ERROR == record.state) {
+                return false;
+            }
+        }
+        return true;
+    }
 
-        // AudioManager audio settings for adjusting the volume
-        AudioManager audioManager = (AudioManager) context.getSystemService(AUDIO_SERVICE);
-        float actualVolume = (float) audioManager.getStreamVolume(AudioManager.STREAM_MUSIC);
-        float maxVolume = (float) audioManager.getStreamMaxVolume(AudioManager.STREAM_MUSIC);
-        volume = actualVolume / maxVolume;
+    LatencyHistogram getPlayLatencyHistogram() {
+        return playLatency;
     }
 
     void playSound(final Sound sound) {
+        playSound(sound, null);
+    }
+
+    /*
+     * Plays a sound, or queues it when its sample is still loading. The callback runs once
+     * playback started, on the calling thread or on the thread that finished loading.
+     */
+    synchronized void playSound(final Sound sound, @Nullable final Runnable onStarted) {
         final SoundRecord soundRecord = Objects.requireNonNull(soundBank.get(sound));
-        if (!isSoundPlaying() && SoundState.READY == soundRecord.state) {
-            lastActiveAudioStreamId = soundPool.play(
-                    soundRecord.id, volume, volume, 1, soundRecord.loop ? -1 : 0, 1f);
-            soundRecord.state = soundRecord.loop ? SoundState.PLAYING : SoundState.READY;
-        } else if (isSoundPlaying()) {
-            log.warning(
-                    format("cannot play sound %s: %d sound stream already active",
-                            sound.name(), lastActiveAudioStreamId));
+        final long requestNanos = SystemClock.elapsedRealtimeNanos();
+        if (isReleased) {
+            log.warning("cannot play sound {}: sound bank released", sound);
+        } else if (SoundState.READY == soundRecord.state) {
+            startSound(sound, soundRecord, requestNanos, onStarted);
+        } else if (SoundState.PLAYING == soundRecord.state) {
+            log.warning("cannot play sound {}: stream {} already active",
+                    sound, soundRecord.streamId);
+        } else if (SoundState.LOADING == soundRecord.state) {
+            log.debug("sound {} still loading, queued", sound);
+            soundRecord.pendingSinceNanos = requestNanos;
+            soundRecord.onStarted = onStarted;
         } else {
-            log.warning(format("cannot play sound %s: invalid state", sound.name()));
+            log.warning("cannot play sound {}: invalid state", sound);
         }
     }
 
-    void stopSound(final Sound sound) {
+    synchronized void stopSound(final Sound sound) {
         final SoundRecord soundRecord = Objects.requireNonNull(soundBank.get(sound));
-        if (SoundState.PLAYING == soundRecord.state) {
-            soundPool.stop(lastActiveAudioStreamId);
+        if (soundRecord.isPending()) {
+            clearPending(soundRecord);
+        } else if (SoundRecord.NO_STREAM != soundRecord.streamId) {
+            soundPool.stop(soundRecord.streamId);
+            soundRecord.streamId = SoundRecord.NO_STREAM;
+            if (SoundState.PLAYING == soundRecord.state) {
+                soundRecord.state = SoundState.READY;
+            }
         } else {
-            log.warning(format("cannot stop sound %s: invalid state", sound.name()));
+            log.warning("cannot stop sound {}: invalid state", sound);
         }
     }
 
-    @Override
-    protected void finalize() throws Throwable {
-        for (SoundRecord record : soundBank.values()) {
-            switch (record.state) {
-                case PLAYING:
-                    soundPool.stop(lastActiveAudioStreamId);
-                    // intentionally fall through
-                case READY:
+    /*
+     * Stops all streams and frees the samples & the pool, the next getInstance() loads anew.
+     */
+    void release() {
+        synchronized (SoundPoolManager.class) {
+            if (this == instance) {
+                instance = null;
+            }
+        }
+        synchronized (this) {
+            if (isReleased) {
+                return;
+            }
+            isReleased = true;
+            for (SoundRecord record : soundBank.values()) {
+                clearPending(record);
+                if (SoundRecord.NO_STREAM != record.streamId) {
+                    soundPool.stop(record.streamId);
+                    record.streamId = SoundRecord.NO_STREAM;
+                }
+                if (SoundState.LOADING != record.state) {
                     soundPool.unload(record.id);
-                    break;
+                }
             }
+            soundPool.release();
+            readiness.trySetException(new IllegalStateException("sound bank released"));
         }
-        soundPool.release();
-        super.finalize();
     }
 
-    private boolean isSoundPlaying() {
-        boolean playbackActive = false;
-        for (SoundRecord record : soundBank.values()) {
-            playbackActive |= (SoundState.PLAYING == record.state);
+    private synchronized void onLoadComplete(final int sampleId, final int status) {
+        if (isReleased) {
+            return;
         }
-        return playbackActive;
+        boolean isLoading = false;
+        for (Map.Entry<Sound, SoundRecord> entry : soundBank.entrySet()) {
+            final SoundRecord record = entry.getValue();
+            if (record.id == sampleId) {
+                record.state = (0 == status) ? SoundState.READY : SoundState.ERROR;
+                if (0 != status) {
+                    log.error("Failed to load sound {}, error: {}", entry.getKey(), status);
+                    clearPending(record);
+                } else if (record.isPending()) {
+                    // start the playback requested while loading
+                    startSound(entry.getKey(), record, record.pendingSinceNanos, record.onStarted);
+                    clearPending(record);
+                }
+            }
+            isLoading |= (SoundState.LOADING == record.state);
+        }
+        if (!isLoading) {
+            if (isReady()) {
+                readiness.trySetResult(null);
+            } else {
+                readiness.trySetException(new IllegalStateException("failed to load sounds"));
+            }
+        }
+    }
+
+    // must hold the lock
+    private void startSound(@NonNull final Sound sound,
+                            @NonNull final SoundRecord soundRecord,
+                            final long requestNanos,
+                            @Nullable final Runnable onStarted) {
+        final float volume = getVolume();
+        final int streamId = soundPool.play(
+                soundRecord.id, volume, volume, sound.priority, sound.loop ? -1 : 0, 1f);
+        if (SoundRecord.NO_STREAM == streamId) {
+            log.warning("cannot play sound {}: no stream available", sound);
+            return;
+        }
+        soundRecord.streamId = streamId;
+        soundRecord.state = sound.loop ? SoundState.PLAYING : SoundState.READY;
+        playLatency.recordNanos(SystemClock.elapsedRealtimeNanos() - requestNanos);
+        if (null != onStarted) {
+            onStarted.run();
+        }
+    }
+
+    private static void clearPending(@NonNull final SoundRecord soundRecord) {
+        soundRecord.pendingSinceNanos = SoundRecord.NOT_PENDING;
+        soundRecord.onStarted = null;
+    }
+
+    private float getVolume() {
+        // read at playback time, the instance outlives any volume change
+        final float actualVolume = (float) audioManager.getStreamVolume(AudioManager.STREAM_MUSIC);
+        final float maxVolume = (float) audioManager.getStreamMaxVolume(AudioManager.STREAM_MUSIC);
+        return actualVolume / maxVolume;
     }
 }
@@ -8,6 +8,10 @@ import android.content.ServiceConnection;
 import android.os.IBinder;
 import android.os.Looper;
 
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleEventObserver;
+import androidx.lifecycle.ProcessLifecycleOwner;
+
 import java.util.ArrayList;
 import java.util.List;
 
@@ -15,6 +19,7 @@ public class VoiceApplication extends Application {
 
     private static VoiceApplication instance;
     private ServiceConnectionManager serviceConnectionManager;
+    private AccessTokenManager accessTokenManager;
 
     public interface VoiceServiceTask {
         void run(final VoiceService voiceService);
@@ -28,6 +33,10 @@ public class VoiceApplication extends Application {
         instance.serviceConnectionManager.updateAccessToken(token);
     }
 
+    static AccessTokenManager accessTokenManager() {
+        return instance.accessTokenManager;
+    }
+
     public VoiceApplication() {
         instance = this;
     }
@@ -35,14 +44,31 @@ public class VoiceApplication extends Application {
     @Override
     public void onCreate() {
         super.onCreate();
-        // Initialize service connection manager without access token initially
-        serviceConnectionManager = new ServiceConnectionManager(this, null);
+        // map the flight recorder first so everything after is on record
+        FlightRecorder.open(this);
+        // start loading the sound bank now so the first ring is not silent
+        SoundPoolManager.getInstance(this);
+        // Initialize service connection manager with the cached access token when still valid
+        accessTokenManager = new AccessTokenManager(this, Constants.ACCESS_TOKEN_URL);
+        final String identity =
+                getSharedPreferences("voice", MODE_PRIVATE).getString("identity", null);
+        serviceConnectionManager = new ServiceConnectionManager(
+                this, (null != identity) ? accessTokenManager.getCachedToken(identity) : null);
+        accessTokenManager.addTokenListener(VoiceApplication::updateAccessToken);
+        // warm up the call engine whenever the app comes to the foreground
+        ProcessLifecycleOwner.get().getLifecycle().addObserver(
+                (LifecycleEventObserver) (source, event) -> {
+                    if (Lifecycle.Event.ON_START == event) {
+                        voiceService(voiceService -> voiceService.warmUp());
+                    }
+                });
     }
 
     @Override
     public void onTerminate() {
         // Note: this method is not called when running on device, devices just kill the process.
         serviceConnectionManager.unbind();
+        SoundPoolManager.getInstance(this).release();
 
         super.onTerminate();
     }
@@ -56,7 +82,8 @@ public class VoiceApplication extends Application {
 
             @Override
             public void onServiceConnected(ComponentName name, IBinder service) {
-                // verify is main thread, all Voice SDK calls must be made on the same Looper thread
+                // verify is main thread, tasks touch the UI while VoiceService marshals all Voice
+                // SDK calls onto its own call control thread
                 assert(Looper.myLooper() == Looper.getMainLooper());
                 // link to voice service
                 voiceService = ((VoiceService.VideoServiceBinder)service).getService();
@@ -89,7 +116,8 @@ public class VoiceApplication extends Application {
 
         public void invoke(VoiceServiceTask task) {
             if (null != voiceService) {
-                // verify is main thread, all Voice SDK calls must be made on the same Looper thread
+                // verify is main thread, tasks touch the UI while VoiceService marshals all Voice
+                // SDK calls onto its own call control thread
                 assert(Looper.myLooper() == Looper.getMainLooper());
                 // run task
                 synchronized (this) {
@@ -107,6 +135,9 @@ public class VoiceApplication extends Application {
 
         public void updateAccessToken(String token) {
             this.accessToken = token;
+            if (null != voiceService) {
+                voiceService.setAccessToken(token);
+            }
             // If we have pending tasks and now have an access token, bind to service
             if (!pendingTasks.isEmpty()) {
                 bindToService();
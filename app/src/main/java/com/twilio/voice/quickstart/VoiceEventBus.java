@@ -0,0 +1,214 @@
+package com.twilio.voice.quickstart;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.twilio.voice.Call;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+
+/**
+ * Dispatches {@link VoiceService.Observer} events. Every subscriber owns a serial queue drained on
+ * its own executor, so a slow observer never delays the service or the other observers. An event of
+ * a coalescing type is merged into the last event still queued for the same call when that event
+ * has the same type, so events of one call are never reordered.
+ */
+class VoiceEventBus {
+    enum EventType {
+        CONNECT_CALL(false),
+        DISCONNECT_CALL(false),
+        ACCEPT_INCOMING_CALL(false),
+        REJECT_INCOMING_CALL(false),
+        INCOMING_CALL(false),
+        CANCELLED_CALL(false),
+        MUTE_CALL(true),
+        HOLD_CALL(true),
+        REGISTRATION_SUCCESSFUL(true),
+        REGISTRATION_FAILED(false),
+        RINGING(true),
+        CONNECT_FAILURE(false),
+        CONNECTED(false),
+        RECONNECTING(true),
+        RECONNECTED(false),
+        DISCONNECTED(false),
+        CALL_QUALITY_WARNINGS_CHANGED(true),
+        CALL_STATS_SAMPLED(true);
+
+        final boolean coalesce;
+
+        EventType(final boolean coalesce) {
+            this.coalesce = coalesce;
+        }
+    }
+
+    interface Delivery {
+        void deliver(@NonNull final VoiceService.Observer observer);
+
+        // merge with an older, still undelivered event of the same type & call
+        default Delivery mergeWith(@NonNull final Delivery older) {
+            return this;
+        }
+    }
+
+    static class QualityWarningsDelivery implements Delivery {
+        private final UUID callId;
+        private final Set<Call.CallQualityWarning> currentWarnings;
+        private final Set<Call.CallQualityWarning> previousWarnings;
+
+        QualityWarningsDelivery(@NonNull final UUID callId,
+                                @NonNull final Set<Call.CallQualityWarning> currentWarnings,
+                                @NonNull final Set<Call.CallQualityWarning> previousWarnings) {
+            this.callId = callId;
+            this.currentWarnings = Collections.unmodifiableSet(new HashSet<>(currentWarnings));
+            this.previousWarnings = Collections.unmodifiableSet(new HashSet<>(previousWarnings));
+        }
+
+        @Override
+        public void deliver(@NonNull final VoiceService.Observer observer) {
+            // observers are free to modify the sets they receive
+            observer.onCallQualityWarningsChanged(
+                    callId, new HashSet<>(currentWarnings), new HashSet<>(previousWarnings));
+        }
+
+        @Override
+        public Delivery mergeWith(@NonNull final Delivery older) {
+            // the merged event spans from the oldest previous state to the newest current state
+            return (older instanceof QualityWarningsDelivery)
+                    ? new QualityWarningsDelivery(
+                            callId, currentWarnings, ((QualityWarningsDelivery) older).previousWarnings)
+                    : this;
+        }
+    }
+
+    private static class Event {
+        final EventType type;
+        final UUID callId;
+        Delivery delivery;
+
+        Event(final EventType type, final UUID callId, final Delivery delivery) {
+            this.type = type;
+            this.callId = callId;
+            this.delivery = delivery;
+        }
+    }
+
+    private static class Subscription implements Runnable {
+        final VoiceService.Observer observer;
+        final Executor executor;
+        final Set<EventType> eventTypes;
+        private final ArrayDeque<Event> pendingEvents = new ArrayDeque<>();
+        // newest queued event of each call, the only one a later event may be merged into
+        private final Map<UUID, Event> lastEvents = new HashMap<>();
+        private volatile boolean active = true;
+        private boolean drainScheduled = false;
+
+        Subscription(final VoiceService.Observer observer,
+                     final Executor executor,
+                     final Set<EventType> eventTypes) {
+            this.observer = observer;
+            this.executor = executor;
+            this.eventTypes = eventTypes;
+        }
+
+        void enqueue(final EventType type, final UUID callId, final Delivery delivery) {
+            boolean schedule;
+            synchronized (this) {
+                final Event lastEvent = lastEvents.get(callId);
+                if (type.coalesce && null != lastEvent && lastEvent.type == type) {
+                    lastEvent.delivery = delivery.mergeWith(lastEvent.delivery);
+                } else {
+                    final Event event = new Event(type, callId, delivery);
+                    pendingEvents.add(event);
+                    lastEvents.put(callId, event);
+                }
+                schedule = !drainScheduled;
+                drainScheduled = true;
+            }
+            if (schedule) {
+                executor.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            while (active) {
+                final Event event;
+                synchronized (this) {
+                    event = pendingEvents.poll();
+                    if (null == event) {
+                        drainScheduled = false;
+                        return;
+                    }
+                    if (lastEvents.get(event.callId) == event) {
+                        lastEvents.remove(event.callId);
+                    }
+                }
+                event.delivery.deliver(observer);
+            }
+        }
+
+        synchronized void cancel() {
+            active = false;
+            pendingEvents.clear();
+            lastEvents.clear();
+        }
+    }
+
+    private static final Executor mainThreadExecutor = new Handler(Looper.getMainLooper())::post;
+    private final CopyOnWriteArrayList<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    void subscribe(@NonNull final VoiceService.Observer observer) {
+        subscribe(observer, mainThreadExecutor, EnumSet.allOf(EventType.class));
+    }
+
+    synchronized void subscribe(@NonNull final VoiceService.Observer observer,
+                                @NonNull final Executor executor,
+                                @NonNull final Set<EventType> eventTypes) {
+        if (null == findSubscription(observer)) {
+            subscriptions.add(new Subscription(observer, executor, EnumSet.copyOf(eventTypes)));
+        }
+    }
+
+    synchronized void unsubscribe(@NonNull final VoiceService.Observer observer) {
+        final Subscription subscription = findSubscription(observer);
+        if (null != subscription) {
+            subscription.cancel();
+            subscriptions.remove(subscription);
+        }
+    }
+
+    void post(@NonNull final EventType type,
+              @Nullable final UUID callId,
+              @NonNull final Delivery delivery) {
+        for (Subscription subscription : subscriptions) {
+            if (subscription.eventTypes.contains(type)) {
+                subscription.enqueue(type, callId, delivery);
+            }
+        }
+    }
+
+    int size() {
+        return subscriptions.size();
+    }
+
+    private Subscription findSubscription(final VoiceService.Observer observer) {
+        for (Subscription subscription : subscriptions) {
+            if (subscription.observer == observer) {
+                return subscription;
+            }
+        }
+        return null;
+    }
+}
@@ -7,8 +7,6 @@ import static com.twilio.voice.quickstart.Constants.ACTION_INCOMING_CALL;
 import static com.twilio.voice.quickstart.Constants.ACTION_REJECT_CALL;
 import static com.twilio.voice.quickstart.Constants.CUSTOM_RINGBACK;
 
-import static java.lang.String.format;
-
 import android.app.Notification;
 import android.app.PendingIntent;
 import android.app.Service;
@@ -19,7 +17,9 @@ import android.graphics.Color;
 import android.os.Binder;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.Handler;
 import android.os.IBinder;
+import android.os.Looper;
 import android.os.SystemClock;
 
 import androidx.annotation.NonNull;
@@ -39,38 +39,55 @@ import com.twilio.voice.ConnectOptions;
 import com.twilio.voice.RegistrationException;
 import com.twilio.voice.RegistrationListener;
 import com.twilio.voice.Voice;
+import com.twilio.voice.quickstart.FlightRecorderFormat.Event;
+import com.twilio.voice.quickstart.VoiceEventBus.EventType;
 
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
 import java.lang.reflect.Method;
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.List;
-import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Random;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Executor;
 
 public class VoiceService extends Service {
     private static final Logger log = new Logger(VoiceService.class);
+    // the live instance, pushes are handed to it directly instead of through an Intent. Guarded
+    // by the class lock so no handoff can be queued behind the shutdown task
+    private static VoiceService runningInstance;
     private final NotificationChannelCompat[] notificationChannels;
-    private final Map<UUID, CallRecord> callDatabase;
-    private final List<Observer> observerList;
+    private final CallRegistry callDatabase;
+    private final VoiceEventBus eventBus;
+    private final PushDedupCache pushDedupCache;
+    private CallControlThread callControl;
+    private CallStatsSampler statsSampler;
+    private RegistrationLedger registrationLedger;
+    private Handler registrationRetryHandler;
     private SoundPoolManager soundPoolManager;
-    private String accessToken;
-    private boolean playCustomRingback;
+    private volatile Status status;
+    private volatile String accessToken;
+    private volatile boolean playCustomRingback;
+    private volatile boolean isWarm;
 
     private enum NotificationPriority {
         LOW,
         HIGH
     }
 
-    private static class CallRecord {
+    static class CallRecord {
         public final CallInvite callInvite;
         public int callInviteNotificationId;
         public Call activeCall;
+        public String callSid;
         public int ringCount;
         public long startTime;
+        public boolean isMuted;
+        public boolean isOnHold;
+        public CallSetupMetrics.Trace setupTrace;
 
         public CallRecord(final Call activeCall) {
             this.callInvite = null;
@@ -106,6 +123,12 @@ public class VoiceService extends Service {
         void onCallQualityWarningsChanged(@NonNull final UUID callId,
                                           @NonNull Set<Call.CallQualityWarning> currentWarnings,
                                           @NonNull Set<Call.CallQualityWarning> previousWarnings);
+        default void onCallStatsSampled(@NonNull final UUID callId,
+                                        long roundTripTime,
+                                        int jitter,
+                                        int packetsLost,
+                                        float mos) {
+        }
     }
 
     public static class Status {
@@ -123,13 +146,16 @@ public class VoiceService extends Service {
         final Map<UUID, CallInvite> pendingCalls;
         final Map<UUID, CallRecord> callMap;
         final UUID activeCall;
+        final long version;
 
         protected Status(final Map<UUID, CallInvite> pendingCalls,
                          final Map<UUID, CallRecord> callList,
-                         final UUID activeCall) {
-            this.pendingCalls = pendingCalls;
-            this.callMap = callList;
+                         final UUID activeCall,
+                         final long version) {
+            this.pendingCalls = Collections.unmodifiableMap(pendingCalls);
+            this.callMap = Collections.unmodifiableMap(callList);
             this.activeCall = activeCall;
+            this.version = version;
         }
     }
 
@@ -154,15 +180,30 @@ public class VoiceService extends Service {
 
     public VoiceService() {
         notificationChannels = new NotificationChannelCompat[NotificationPriority.values().length];
-        callDatabase = new HashMap<>();
-        observerList = new ArrayList<>();
+        callDatabase = new CallRegistry();
+        eventBus = new VoiceEventBus();
+        pushDedupCache = new PushDedupCache();
+        status = new Status(
+                Collections.emptyMap(), Collections.emptyMap(), null, 0);
     }
 
     @Override
     public void onCreate() {
         log.debug("onCreate");
         super.onCreate();
-        soundPoolManager = new SoundPoolManager(getApplicationContext());
+        FlightRecorder.record(Event.SERVICE_CREATED, null);
+        callControl = new CallControlThread();
+        statsSampler = new CallStatsSampler(callControl.getLooper(), callDatabase,
+                (callId, roundTripTime, jitter, packetsLost, mos) ->
+                        eventBus.post(EventType.CALL_STATS_SAMPLED, callId,
+                                observer -> observer.onCallStatsSampled(
+                                        callId, roundTripTime, jitter, packetsLost, mos)));
+        registrationLedger = new RegistrationLedger(this);
+        registrationRetryHandler = new Handler(callControl.getLooper());
+        soundPoolManager = SoundPoolManager.getInstance(getApplicationContext());
+        synchronized (VoiceService.class) {
+            runningInstance = this;
+        }
 
         // create notification channels
         notificationChannels[NotificationPriority.LOW.ordinal()] =
@@ -197,9 +238,21 @@ public class VoiceService extends Service {
 
     @Override
     public void onDestroy() {
-        log.debug("onDestroy");
-        // cleanup sounds
-        soundPoolManager = null;
+        log.debug("onDestroy, call control thread {}, pushes {}, sound play latency (ms) {}",
+                callControl, pushDedupCache, soundPoolManager.getPlayLatencyHistogram());
+        FlightRecorder.record(Event.SERVICE_DESTROYED, null);
+        // release per service state once pending call control work has run, the sound bank is
+        // process wide & stays loaded, then stop the call control thread. Handoffs racing with
+        // this either run before the shutdown task or fail and fall back to startService
+        synchronized (VoiceService.class) {
+            runningInstance = null;
+            callControl.execute(() -> {
+                registrationRetryHandler.removeCallbacksAndMessages(null);
+                statsSampler.stop();
+                soundPoolManager = null;
+            });
+            callControl.quitSafely();
+        }
 
         // remove notification channels
         NotificationManagerCompat notificationManager = NotificationManagerCompat.from(this);
@@ -213,6 +266,14 @@ public class VoiceService extends Service {
         super.onDestroy();
     }
 
+    /*
+     * adb shell dumpsys activity service VoiceService lists the stats of the active calls.
+     */
+    @Override
+    protected void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+        writer.print(dumpCallStats());
+    }
+
     @Override
     public IBinder onBind(Intent intent) {
         return new VideoServiceBinder(intent);
@@ -225,15 +286,15 @@ public class VoiceService extends Service {
             switch (Objects.requireNonNull(intent.getAction())) {
                 case ACTION_INCOMING_CALL:
                     log.debug("🔥 [VOICE_SERVICE] *** PROCESSING INCOMING CALL ***");
-                    incomingCall(
-                            Objects.requireNonNull(
-                                    intent.getParcelableExtra(Constants.INCOMING_CALL_INVITE)));
+                    final CallInvite callInvite = Objects.requireNonNull(
+                            intent.getParcelableExtra(Constants.INCOMING_CALL_INVITE));
+                    callControl.execute(() -> incomingCall(callInvite));
                     break;
                 case ACTION_CANCEL_CALL:
                     log.debug("🔥 [VOICE_SERVICE] Processing call cancellation");
-                    cancelledCall(
-                            Objects.requireNonNull(
-                                    intent.getParcelableExtra(Constants.CANCELLED_CALL_INVITE)));
+                    final CancelledCallInvite cancelledCallInvite = Objects.requireNonNull(
+                            intent.getParcelableExtra(Constants.CANCELLED_CALL_INVITE));
+                    callControl.execute(() -> cancelledCall(cancelledCallInvite));
                     break;
                 case ACTION_REJECT_CALL:
                     log.debug("🔥 [VOICE_SERVICE] Processing call rejection");
@@ -257,78 +318,191 @@ public class VoiceService extends Service {
     }
 
     public Status getStatus() {
-        Map<UUID, CallInvite> pendingCalls = new HashMap<>();
-        Map<UUID, Status.CallRecord> callMap = new HashMap<>();
-        UUID activeCall = null;
-        for (Map.Entry<UUID, CallRecord> callEntry: callDatabase.entrySet()) {
-            if (null == callEntry.getValue().activeCall &&
-                null != callEntry.getValue().callInvite) {
-                pendingCalls.put(callEntry.getKey(), callEntry.getValue().callInvite);
-            } else {
-                callMap.put(callEntry.getKey(), new Status.CallRecord(
-                        callEntry.getValue().activeCall.isMuted(),
-                        callEntry.getValue().activeCall.isOnHold(),
-                        callEntry.getValue().startTime));
-                if (null == activeCall) {
-                    activeCall = callEntry.getKey();
-                } else if (!callEntry.getValue().activeCall.isOnHold()) {
-                    activeCall = callEntry.getKey();
-                }
+        // immutable snapshot, safe to read from any thread
+        return status;
+    }
+
+    public boolean hasStatusChangedSince(final long version) {
+        return status.version != version;
+    }
+
+    public void setAccessToken(@Nullable final String accessToken) {
+        this.accessToken = accessToken;
+    }
+
+    public void warmUp() {
+        warmUp(null);
+    }
+
+    /*
+     * Pays the one-time costs of the first call ahead of time so the first invite rings and the
+     * first connect starts as fast as later ones. The optional callback runs on the main thread
+     * once the engine is warm.
+     */
+    public void warmUp(@Nullable final Runnable onWarm) {
+        callControl.execute(() -> {
+            final long startTime = SystemClock.elapsedRealtime();
+            if (!isWarm) {
+                // seed the SecureRandom instance backing UUID.randomUUID()
+                UUID.randomUUID();
             }
-        }
-        return new Status(pendingCalls, callMap, activeCall);
+            // the ringer must be decoded before the first invite can ring
+            soundPoolManager.whenReady().addOnCompleteListener(callControl, task -> {
+                if (!task.isSuccessful()) {
+                    log.warning("sound bank failed to load, warm up incomplete");
+                    return;
+                }
+                if (!isWarm) {
+                    isWarm = true;
+                    log.debug("warm up took {}ms", SystemClock.elapsedRealtime() - startTime);
+                }
+                if (null != onWarm) {
+                    new Handler(Looper.getMainLooper()).post(onWarm);
+                }
+            });
+        });
+    }
+
+    /*
+     * Sets how often the media statistics of active calls are sampled, sampling stops when the
+     * interval is not positive.
+     */
+    public void setStatsSamplingInterval(final long intervalMs) {
+        callControl.execute(() -> statsSampler.setSamplingInterval(intervalMs));
+    }
+
+    /*
+     * The recent media statistics of every active call, oldest sample first. Safe to call from
+     * any thread while the calls are being sampled.
+     */
+    public String dumpCallStats() {
+        final StringBuilder builder = new StringBuilder();
+        statsSampler.dump(builder);
+        return builder.toString();
     }
 
     public void registerObserver(@NonNull final Observer observer) {
-        if (!observerList.contains(observer)) {
-            observerList.add(observer);
-        }
+        eventBus.subscribe(observer);
+    }
+
+    public void registerObserver(@NonNull final Observer observer,
+                                 @NonNull final Executor executor,
+                                 @NonNull final Set<EventType> eventTypes) {
+        eventBus.subscribe(observer, executor, eventTypes);
     }
 
     public void unregisterObserver(@NonNull final Observer observer) {
-        observerList.remove(observer);
+        eventBus.unsubscribe(observer);
+    }
+
+    /*
+     * Queues an invite on the call control thread of the running service without parceling it.
+     * Returns false when no service is running, callers then fall back to startService.
+     */
+    static synchronized boolean handOffIncomingCall(@NonNull final CallInvite callInvite) {
+        final VoiceService voiceService = runningInstance;
+        return null != voiceService &&
+                voiceService.callControl.offer(() -> voiceService.incomingCall(callInvite));
+    }
+
+    static synchronized boolean handOffCancelledCall(
+            @NonNull final CancelledCallInvite cancelledCallInvite) {
+        final VoiceService voiceService = runningInstance;
+        return null != voiceService &&
+                voiceService.callControl.offer(() -> voiceService.cancelledCall(cancelledCallInvite));
     }
 
     public void registerFCMToken(@NonNull final String fcmToken) {
+        callControl.execute(() -> handleRegisterFCMToken(fcmToken));
+    }
+
+    public UUID connectCall(@NonNull final ConnectOptions options) {
+        // create the call record right away so the returned id can be looked up, only the SDK
+        // work runs on the call control thread
+        final UUID callId = UUID.randomUUID();
+        final CallRecord callRecord = new CallRecord((Call) null);
+        callRecord.setupTrace = CallSetupMetrics.startOutgoingTrace();
+        callRecord.startTime = SystemClock.elapsedRealtime();
+        callDatabase.put(callId, callRecord);
+        invalidateStatus();
+        callControl.execute(() -> handleConnectCall(callId, callRecord, options));
+        return callId;
+    }
+
+    public UUID acceptCall(@NonNull final UUID callId) {
+        final long answerRequestedNanos = CallSetupMetrics.now();
+        callControl.execute(() -> handleAcceptCall(callId, answerRequestedNanos));
+        return callId;
+    }
+
+    public void disconnectCall(@NonNull final UUID callId) {
+        callControl.execute(() -> handleDisconnectCall(callId));
+    }
+
+    public void muteCall(@NonNull final UUID callId) {
+        callControl.execute(() -> handleMuteCall(callId));
+    }
+
+    public void holdCall(@NonNull final UUID callId) {
+        callControl.execute(() -> handleHoldCall(callId));
+    }
+
+    public void rejectIncomingCall(final UUID callId) {
+        callControl.execute(() -> handleRejectIncomingCall(callId));
+    }
+
+    private void handleRegisterFCMToken(@NonNull final String fcmToken) {
+        // a newer request supersedes any pending retry
+        registrationRetryHandler.removeCallbacksAndMessages(null);
         log.debug("🔥 [VOICE_SERVICE] Registering FCM token with Twilio...");
-        log.debug("🔥 [VOICE_SERVICE] FCM Token: " + fcmToken.substring(0, Math.min(50, fcmToken.length())) + "...");
-        log.debug("🔥 [VOICE_SERVICE] Access Token: " + (accessToken != null ? accessToken.substring(0, Math.min(50, accessToken.length())) + "..." : "NULL"));
+        log.debug(() -> "🔥 [VOICE_SERVICE] FCM Token: " + fcmToken.substring(0, Math.min(50, fcmToken.length())) + "...");
+        log.debug(() -> "🔥 [VOICE_SERVICE] Access Token: " + (accessToken != null ? accessToken.substring(0, Math.min(50, accessToken.length())) + "..." : "NULL"));
         
         if (accessToken == null) {
             log.error("🔥 [VOICE_SERVICE] ERROR: Cannot register FCM - access token is null!");
             return;
         }
-        
+
+        // skip the round trip when nothing changed since the last successful registration
+        final String fingerprint = RegistrationLedger.fingerprint(accessToken, fcmToken);
+        if (!registrationLedger.shouldRegister(fingerprint)) {
+            FlightRecorder.record(Event.REGISTER_SKIPPED, null);
+            log.debug("🔥 [VOICE_SERVICE] Registration unchanged, skipping Voice.register() ({} avoided)",
+                    registrationLedger.getAvoidedCount());
+            warmUp();
+            eventBus.post(EventType.REGISTRATION_SUCCESSFUL, null,
+                    observer -> observer.registrationSuccessful(fcmToken));
+            return;
+        }
+
+        FlightRecorder.record(Event.REGISTER, null);
         Voice.register(accessToken, Voice.RegistrationChannel.FCM, fcmToken, registrationListener);
         log.debug("🔥 [VOICE_SERVICE] Voice.register() called, waiting for callback...");
     }
 
-    public UUID connectCall(@NonNull final ConnectOptions options) {
-        final UUID callId = UUID.randomUUID();
-
-        // connect call & create call record
-        CallRecord callRecord = new CallRecord(Voice.connect(this, options, callListener));
-        callDatabase.put(callId, callRecord);
-
-        // set call start time
-        callRecord.startTime = SystemClock.elapsedRealtime();
+    private void handleConnectCall(@NonNull final UUID callId,
+                                   @NonNull final CallRecord callRecord,
+                                   @NonNull final ConnectOptions options) {
+        // connect call & attach it to its call record
+        FlightRecorder.record(Event.CONNECT, callId);
+        callDatabase.attachCall(callId, Voice.connect(this, options, callListener));
+        callRecord.setupTrace.mark(CallSetupMetrics.Milestone.CONNECT_STARTED);
 
         // create & post notification for call
         final Notification notification = createCallNotification(callRecord, NotificationPriority.LOW);
         foregroundService(callRecord.callInviteNotificationId, notification);
 
         // invoke observers
-        for (Observer observer: observerList) {
-            observer.connectCall(callId, options);
-        }
-
-        // return call Id
-        return callId;
+        eventBus.post(EventType.CONNECT_CALL, callId,
+                observer -> observer.connectCall(callId, options));
     }
 
-    public UUID acceptCall(@NonNull final UUID callId) {
+    private void handleAcceptCall(@NonNull final UUID callId, final long answerRequestedNanos) {
         // find call record
         final CallRecord callRecord = Objects.requireNonNull(callDatabase.get(callId));
+        callRecord.setupTrace.mark(
+                CallSetupMetrics.Milestone.ANSWER_REQUESTED, answerRequestedNanos);
+        FlightRecorder.record(Event.ACCEPT, callId);
 
         // remove incoming call notification
         NotificationManagerCompat notificationManager = NotificationManagerCompat.from(this);
@@ -345,20 +519,21 @@ public class VoiceService extends Service {
         callRecord.startTime = SystemClock.elapsedRealtime();
 
         // accept call
-        callRecord.activeCall = callRecord.callInvite.accept(this, callListener);
+        callDatabase.attachCall(callId, callRecord.callInvite.accept(this, callListener));
+        callRecord.setupTrace.mark(CallSetupMetrics.Milestone.INVITE_ACCEPTED);
+        invalidateStatus();
 
         // invoke observers
-        for (Observer observer: observerList) {
-            observer.acceptIncomingCall(callId);
-        }
-
-        return callId;
+        eventBus.post(EventType.ACCEPT_INCOMING_CALL, callId,
+                observer -> observer.acceptIncomingCall(callId));
     }
 
-    public void disconnectCall(@NonNull final UUID callId) {
+    private void handleDisconnectCall(@NonNull final UUID callId) {
         // find call record
         final CallRecord callRecord = Objects.requireNonNull(callDatabase.get(callId));
 
+        FlightRecorder.record(Event.DISCONNECT, callId);
+
         // play disconnect sound
         soundPoolManager.playSound(SoundPoolManager.Sound.DISCONNECT);
 
@@ -366,42 +541,47 @@ public class VoiceService extends Service {
         callRecord.activeCall.disconnect();
 
         // invoke observers
-        for (Observer observer: observerList) {
-            observer.disconnectCall(callId);
-        }
+        eventBus.post(EventType.DISCONNECT_CALL, callId,
+                observer -> observer.disconnectCall(callId));
     }
 
-    public void muteCall(@NonNull final UUID callId) {
+    private void handleMuteCall(@NonNull final UUID callId) {
         // find call record
         final CallRecord callRecord = Objects.requireNonNull(callDatabase.get(callId));
 
         // mute call
         boolean muteState = callRecord.activeCall.isMuted();
         callRecord.activeCall.mute(!muteState);
+        callRecord.isMuted = !muteState;
+        FlightRecorder.record(Event.MUTE, callId, callRecord.isMuted ? 1 : 0);
+        invalidateStatus();
 
         // invoke observers
-        for (Observer observer: observerList) {
-            observer.muteCall(callId, !muteState);
-        }
+        eventBus.post(EventType.MUTE_CALL, callId,
+                observer -> observer.muteCall(callId, !muteState));
     }
 
-    public void holdCall(@NonNull final UUID callId) {
+    private void handleHoldCall(@NonNull final UUID callId) {
         // find call record
         final CallRecord callRecord = Objects.requireNonNull(callDatabase.get(callId));
 
         // hold call
         boolean holdState = callRecord.activeCall.isOnHold();
         callRecord.activeCall.hold(!holdState);
+        callRecord.isOnHold = !holdState;
+        FlightRecorder.record(Event.HOLD, callId, callRecord.isOnHold ? 1 : 0);
+        invalidateStatus();
 
         // invoke observers
-        for (Observer observer: observerList) {
-            observer.holdCall(callId, !holdState);
-        }
+        eventBus.post(EventType.HOLD_CALL, callId,
+                observer -> observer.holdCall(callId, !holdState));
     }
 
-    public void rejectIncomingCall(final UUID callId) {
+    private void handleRejectIncomingCall(final UUID callId) {
         // find & remove call record
         final CallRecord callRecord = Objects.requireNonNull(callDatabase.remove(callId));
+        invalidateStatus();
+        FlightRecorder.record(Event.REJECT, callId);
 
         // remove notification
         NotificationManagerCompat notificationManager = NotificationManagerCompat.from(this);
@@ -414,50 +594,76 @@ public class VoiceService extends Service {
         callRecord.callInvite.reject(this);
 
         // notify observers
-        for (Observer observer: observerList) {
-            observer.rejectIncomingCall(callId);
-        }
+        eventBus.post(EventType.REJECT_INCOMING_CALL, callId,
+                observer -> observer.rejectIncomingCall(callId));
     }
 
     private void incomingCall(@NonNull final CallInvite callInvite) {
         log.debug("🔥 [VOICE_SERVICE] *** INCOMING CALL PROCESSING ***");
-        log.debug(format("🔥 [VOICE_SERVICE] Call details:\n\tFrom: %s\n\tTo: %s\n\tCall SID: %s", 
+        log.debug("🔥 [VOICE_SERVICE] Call details:\n\tFrom: {}\n\tTo: {}\n\tCall SID: {}",
                 callInvite.getFrom(),
                 callInvite.getTo(),
-                callInvite.getCallSid()));
-        
+                callInvite.getCallSid());
+
+        // drop redelivered invites & invites whose cancel already arrived, an invite still ringing
+        // may be redelivered after its dedup entry expired
+        if (null != callDatabase.findCallId(callInvite.getCallSid()) ||
+                !pushDedupCache.acceptInvite(callInvite.getCallSid())) {
+            log.debug("🔥 [VOICE_SERVICE] Ignoring duplicate or cancelled invite {}",
+                    callInvite.getCallSid());
+            CallSetupMetrics.discardIncomingTrace(callInvite.getCallSid());
+            FlightRecorder.record(Event.DUPLICATE_INVITE, null);
+            return;
+        }
+
         // create call record
         final UUID uuid = UUID.randomUUID();
         final CallRecord callRecord = new CallRecord(callInvite);
+        callRecord.setupTrace = CallSetupMetrics.claimIncomingTrace(callInvite.getCallSid());
+        callRecord.setupTrace.mark(CallSetupMetrics.Milestone.SERVICE_INCOMING);
         callDatabase.put(uuid, callRecord);
-        log.debug("🔥 [VOICE_SERVICE] Created call record with UUID: " + uuid);
+        invalidateStatus();
+        FlightRecorder.record(Event.INCOMING_INVITE, uuid);
+        log.debug("🔥 [VOICE_SERVICE] Created call record with UUID: {}", uuid);
 
         // create incoming call notification
         NotificationPriority priority =
                 isAppVisible() ? NotificationPriority.LOW : NotificationPriority.HIGH;
-        log.debug("🔥 [VOICE_SERVICE] Creating notification with priority: " + priority + ", app visible: " + isAppVisible());
+        log.debug("🔥 [VOICE_SERVICE] Creating notification with priority: {}, app visible: {}",
+                priority, isAppVisible());
         final Notification notification = createIncomingCallNotification(uuid, callRecord, priority);
         NotificationManagerCompat notificationManager = NotificationManagerCompat.from(this);
         notificationManager.notify(callRecord.callInviteNotificationId, notification);
-        log.debug("🔥 [VOICE_SERVICE] Notification posted with ID: " + callRecord.callInviteNotificationId);
+        callRecord.setupTrace.mark(CallSetupMetrics.Milestone.NOTIFICATION_POSTED);
+        log.debug("🔥 [VOICE_SERVICE] Notification posted with ID: {}", callRecord.callInviteNotificationId);
 
-        // create ringer sound
-        soundPoolManager.playSound(SoundPoolManager.Sound.RINGER);
+        // create ringer sound, starts as soon as the sample is loaded on a cold start
+        soundPoolManager.playSound(SoundPoolManager.Sound.RINGER,
+                () -> callRecord.setupTrace.mark(CallSetupMetrics.Milestone.RINGER_STARTED));
         log.debug("🔥 [VOICE_SERVICE] Playing ringer sound");
 
         // notify observers
-        log.debug("🔥 [VOICE_SERVICE] Notifying " + observerList.size() + " observers");
-        for (Observer observer: observerList) {
-            observer.incomingCall(uuid, callInvite);
-        }
+        log.debug("🔥 [VOICE_SERVICE] Notifying {} observers", eventBus.size());
+        eventBus.post(EventType.INCOMING_CALL, uuid,
+                observer -> observer.incomingCall(uuid, callInvite));
         log.debug("🔥 [VOICE_SERVICE] *** INCOMING CALL PROCESSING COMPLETE ***");
     }
 
     private void cancelledCall(@NonNull final CancelledCallInvite cancelledCallInvite) {
-        // find call record
-        final UUID callId =
-                Objects.requireNonNull(findAssociatedCallId(cancelledCallInvite.getCallSid()));
-        final CallRecord callRecord = Objects.requireNonNull(callDatabase.remove(callId));
+        // find the ringing invite first, it may ring for longer than dedup entries live
+        final String callSid = cancelledCallInvite.getCallSid();
+        final UUID callId = callDatabase.findCallId(callSid);
+        final CallRecord callRecord = (null != callId) ? callDatabase.get(callId) : null;
+        if (null == callRecord || null == callRecord.callInvite || null != callRecord.activeCall) {
+            // duplicate cancel, one that overtook its invite or one for an answered invite
+            pushDedupCache.unmatchedCancel(callSid);
+            log.debug("no pending invite for cancel {}", callSid);
+            return;
+        }
+        pushDedupCache.cancelled(callSid);
+        callDatabase.remove(callId);
+        invalidateStatus();
+        FlightRecorder.record(Event.CANCELLED_INVITE, callId);
 
         // remove notification
         NotificationManagerCompat notificationManager = NotificationManagerCompat.from(this);
@@ -467,9 +673,7 @@ public class VoiceService extends Service {
         soundPoolManager.stopSound(SoundPoolManager.Sound.RINGER);
 
         // notify observers
-        for (Observer observer: observerList) {
-            observer.cancelledCall(callId);
-        }
+        eventBus.post(EventType.CANCELLED_CALL, callId, observer -> observer.cancelledCall(callId));
     }
 
     private Notification createIncomingCallNotification(
@@ -546,23 +750,28 @@ public class VoiceService extends Service {
                 .build();
     }
 
-    private UUID findAssociatedCallId(final String callSid) {
-        for (Map.Entry<UUID, CallRecord> entry: callDatabase.entrySet()) {
-            if (null != entry.getValue().callInvite &&
-                    entry.getValue().callInvite.getCallSid().equals(callSid)) {
-                return entry.getKey();
-            }
-        }
-        return null;
-    }
-
-    private UUID findAssociatedCallId(final Call call) {
-        for (Map.Entry<UUID, CallRecord> entry: callDatabase.entrySet()) {
-            if (null != entry.getValue().activeCall && entry.getValue().activeCall == call) {
-                return entry.getKey();
+    private synchronized void invalidateStatus() {
+        // rebuild the published snapshot, on the call control thread or when a call is placed
+        Map<UUID, CallInvite> pendingCalls = new HashMap<>();
+        Map<UUID, Status.CallRecord> callMap = new HashMap<>();
+        UUID activeCall = null;
+        for (Map.Entry<UUID, CallRecord> callEntry: callDatabase.entrySet()) {
+            final CallRecord callRecord = callEntry.getValue();
+            if (null == callRecord.activeCall && null != callRecord.callInvite) {
+                pendingCalls.put(callEntry.getKey(), callRecord.callInvite);
+            } else {
+                callMap.put(callEntry.getKey(), new Status.CallRecord(
+                        callRecord.isMuted,
+                        callRecord.isOnHold,
+                        callRecord.startTime));
+                if (null == activeCall) {
+                    activeCall = callEntry.getKey();
+                } else if (!callRecord.isOnHold) {
+                    activeCall = callEntry.getKey();
+                }
             }
         }
-        return null;
+        status = new Status(pendingCalls, callMap, activeCall, status.version + 1);
     }
 
     private boolean isAppVisible() {
@@ -596,11 +805,14 @@ public class VoiceService extends Service {
         @Override
         public void onRegistered(@NonNull String accessToken, @NonNull String fcmToken) {
             log.debug("🔥 [VOICE_SERVICE] *** FCM REGISTRATION SUCCESSFUL! ***");
-            log.debug("🔥 [VOICE_SERVICE] FCM Token registered: " + fcmToken.substring(0, Math.min(50, fcmToken.length())) + "...");
+            log.debug(() -> "🔥 [VOICE_SERVICE] FCM Token registered: " + fcmToken.substring(0, Math.min(50, fcmToken.length())) + "...");
+            registrationLedger.recordSuccess(RegistrationLedger.fingerprint(accessToken, fcmToken));
+            FlightRecorder.record(Event.REGISTERED, null);
+            // incoming calls can now arrive, get ready for them
+            warmUp();
             // notify observers
-            for (Observer observer: observerList) {
-                observer.registrationSuccessful(fcmToken);
-            }
+            eventBus.post(EventType.REGISTRATION_SUCCESSFUL, null,
+                    observer -> observer.registrationSuccessful(fcmToken));
         }
 
         @Override
@@ -608,12 +820,20 @@ public class VoiceService extends Service {
                             @NonNull String accessToken,
                             @NonNull String fcmToken) {
             log.error("🔥 [VOICE_SERVICE] *** FCM REGISTRATION FAILED! ***");
-            log.error("🔥 [VOICE_SERVICE] Error: " + registrationException.getMessage());
-            log.error("🔥 [VOICE_SERVICE] Error Code: " + registrationException.getErrorCode());
-            // notify observers
-            for (Observer observer: observerList) {
-                observer.registrationFailed(registrationException);
+            log.warning(registrationException,
+                    "🔥 [VOICE_SERVICE] Error Code: " + registrationException.getErrorCode());
+            FlightRecorder.record(
+                    Event.REGISTRATION_FAILED, null, registrationException.getErrorCode());
+            // retry with backoff, picking up a refreshed access token if there is one
+            final long retryDelayMs = registrationLedger.recordFailure();
+            if (0 <= retryDelayMs) {
+                log.debug("🔥 [VOICE_SERVICE] Retrying registration in " + retryDelayMs + "ms");
+                registrationRetryHandler.postDelayed(
+                        () -> handleRegisterFCMToken(fcmToken), retryDelayMs);
             }
+            // notify observers
+            eventBus.post(EventType.REGISTRATION_FAILED, null,
+                    observer -> observer.registrationFailed(registrationException));
         }
     };
 
@@ -623,8 +843,10 @@ public class VoiceService extends Service {
             log.debug("Ringing");
 
             // find call record & remove
-            final UUID callId = Objects.requireNonNull(findAssociatedCallId(call));
+            final UUID callId = Objects.requireNonNull(callDatabase.findCallId(call));
             final CallRecord callRecord = Objects.requireNonNull(callDatabase.get(callId));
+            callRecord.setupTrace.mark(CallSetupMetrics.Milestone.RINGING);
+            FlightRecorder.record(Event.RINGING, callId);
 
             // When [answerOnBridge](https://www.twilio.com/docs/voice/twiml/dial#answeronbridge)
             // is enabled in the <Dial> TwiML verb, the caller will not hear the ringback while
@@ -636,18 +858,20 @@ public class VoiceService extends Service {
             }
 
             // notify observers
-            for (Observer observer: observerList) {
-                observer.onRinging(callId);
-            }
+            eventBus.post(EventType.RINGING, callId, observer -> observer.onRinging(callId));
         }
 
         @Override
         public void onConnectFailure(@NonNull Call call, @NonNull CallException callException) {
-            log.debug("Connect failure: " + logException(callException));
+            log.warning(callException, "connect failure");
 
             // find call record & remove
-            final UUID callId = Objects.requireNonNull(findAssociatedCallId(call));
+            final UUID callId = Objects.requireNonNull(callDatabase.findCallId(call));
             Objects.requireNonNull(callDatabase.remove(callId));
+            invalidateStatus();
+            statsSampler.untrack(callId);
+            FlightRecorder.record(
+                    Event.CONNECT_FAILURE, callId, callException.getErrorCode());
 
             // kill ringer
             if (playCustomRingback) {
@@ -659,9 +883,8 @@ public class VoiceService extends Service {
                     VoiceService.this, ServiceCompat.STOP_FOREGROUND_REMOVE);
 
             // notify observers
-            for (Observer observer: observerList) {
-                observer.onConnectFailure(callId, callException);
-            }
+            eventBus.post(EventType.CONNECT_FAILURE, callId,
+                    observer -> observer.onConnectFailure(callId, callException));
         }
 
         @Override
@@ -669,7 +892,14 @@ public class VoiceService extends Service {
             log.debug("Connected");
 
             // find call record
-            final UUID callId = Objects.requireNonNull(findAssociatedCallId(call));
+            final UUID callId = Objects.requireNonNull(callDatabase.findCallId(call));
+            Objects.requireNonNull(callDatabase.get(callId)).setupTrace.mark(
+                    CallSetupMetrics.Milestone.CONNECTED);
+            FlightRecorder.record(Event.CONNECTED, callId);
+
+            // start sampling media statistics
+            statsSampler.track(callId);
+            log.debug(CallSetupMetrics::summary);
 
             // kill ringer
             if (playCustomRingback) {
@@ -677,22 +907,21 @@ public class VoiceService extends Service {
             }
 
             // notify observers
-            for (Observer observer: observerList) {
-                observer.onConnected(callId);
-            }
+            eventBus.post(EventType.CONNECTED, callId, observer -> observer.onConnected(callId));
         }
 
         @Override
         public void onReconnecting(@NonNull Call call, @NonNull CallException callException) {
-            log.debug("Reconnecting: " + logException(callException));
+            log.warning(callException, "reconnecting");
 
             // find call record
-            final UUID callId = Objects.requireNonNull(findAssociatedCallId(call));
+            final UUID callId = Objects.requireNonNull(callDatabase.findCallId(call));
+
+            FlightRecorder.record(Event.RECONNECTING, callId, callException.getErrorCode());
 
             // notify observers
-            for (Observer observer: observerList) {
-                observer.onReconnecting(callId, callException);
-            }
+            eventBus.post(EventType.RECONNECTING, callId,
+                    observer -> observer.onReconnecting(callId, callException));
         }
 
         @Override
@@ -700,30 +929,38 @@ public class VoiceService extends Service {
             log.debug("Reconnected");
 
             // find call record
-            final UUID callId = Objects.requireNonNull(findAssociatedCallId(call));
+            final UUID callId = Objects.requireNonNull(callDatabase.findCallId(call));
+
+            FlightRecorder.record(Event.RECONNECTED, callId);
 
             // notify observers
-            for (Observer observer: observerList) {
-                observer.onReconnected(callId);
-            }
+            eventBus.post(EventType.RECONNECTED, callId,
+                    observer -> observer.onReconnected(callId));
         }
 
         @Override
         public void onDisconnected(@NonNull Call call, @Nullable CallException callException) {
-            log.debug("Disconnected: " + logException(callException));
+            if (null != callException) {
+                log.warning(callException, "disconnected");
+            } else {
+                log.debug("Disconnected");
+            }
 
             // find call record & remove
-            final UUID callId = Objects.requireNonNull(findAssociatedCallId(call));
+            final UUID callId = Objects.requireNonNull(callDatabase.findCallId(call));
             Objects.requireNonNull(callDatabase.remove(callId));
+            invalidateStatus();
+            statsSampler.untrack(callId);
+            FlightRecorder.record(Event.DISCONNECTED, callId,
+                    (null != callException) ? callException.getErrorCode() : 0);
 
             // remove in-call notification
             ServiceCompat.stopForeground(
                     VoiceService.this, ServiceCompat.STOP_FOREGROUND_REMOVE);
 
             // notify observers
-            for (Observer observer: observerList) {
-                observer.onDisconnected(callId, callException);
-            }
+            eventBus.post(EventType.DISCONNECTED, callId,
+                    observer -> observer.onDisconnected(callId, callException));
         }
 
         public void onCallQualityWarningsChanged(@NonNull Call call,
@@ -732,21 +969,14 @@ public class VoiceService extends Service {
             log.debug("onCallQualityWarningsChanged");
 
             // find call record
-            final UUID callId = Objects.requireNonNull(findAssociatedCallId(call));
+            final UUID callId = Objects.requireNonNull(callDatabase.findCallId(call));
 
-            // notify observers
-            for (Observer observer: observerList) {
-                observer.onCallQualityWarningsChanged(callId, currentWarnings, previousWarnings);
-            }
-        }
+            FlightRecorder.record(Event.QUALITY_WARNINGS, callId, currentWarnings.size());
 
-        private String logException(@Nullable CallException callException) {
-            return (null != callException)
-                    ? format(Locale.US,
-                    "%d, %s",
-                            callException.getErrorCode(),
-                            callException.getMessage())
-                    : "";
+            // notify observers
+            eventBus.post(EventType.CALL_QUALITY_WARNINGS_CHANGED, callId,
+                    new VoiceEventBus.QualityWarningsDelivery(
+                            callId, currentWarnings, previousWarnings));
         }
     };
 }
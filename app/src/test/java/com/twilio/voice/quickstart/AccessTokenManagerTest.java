@@ -0,0 +1,361 @@
+package com.twilio.voice.quickstart;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import android.content.SharedPreferences;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+public class AccessTokenManagerTest {
+    private static final long TIMEOUT_SECONDS = 5;
+
+    private MockWebServer server;
+    private FakePreferences preferences;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+        preferences = new FakePreferences();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    @Test
+    public void parsesExpiryFromUnpaddedClaims() {
+        final long expirySeconds = 1700000001L;
+        final String jwt = jwt("alice", expirySeconds);
+        assertEquals(TimeUnit.SECONDS.toMillis(expirySeconds),
+                AccessTokenManager.parseExpiryMillis(jwt));
+        assertEquals(0, AccessTokenManager.parseExpiryMillis("not a token"));
+    }
+
+    @Test
+    public void servesCachedTokenWithoutFetchingAgain() throws Exception {
+        final String token = jwt("alice", hoursFromNow(1));
+        server.enqueue(new MockResponse().setBody(token));
+        final AccessTokenManager manager = newManager();
+
+        assertEquals(token, getToken(manager, "alice").take());
+        assertEquals(token, getToken(manager, "alice").take());
+        assertEquals(token, manager.getCachedToken("alice"));
+        assertNull(manager.getCachedToken("bob"));
+        assertEquals(1, server.getRequestCount());
+
+        // a new manager picks the token up from the preferences
+        assertEquals(token, newManager().getCachedToken("alice"));
+    }
+
+    @Test
+    public void concurrentRequestsShareOneFetch() throws Exception {
+        final String token = jwt("alice", hoursFromNow(1));
+        server.enqueue(new MockResponse().setBody(token).setBodyDelay(200, TimeUnit.MILLISECONDS));
+        final AccessTokenManager manager = newManager();
+
+        final Results first = getToken(manager, "alice");
+        final Results second = getToken(manager, "alice");
+        assertEquals(token, first.take());
+        assertEquals(token, second.take());
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void callbacksOnlyGetTokenOfTheirIdentity() throws Exception {
+        server.setDispatcher(new Dispatcher() {
+            @NonNull
+            @Override
+            public MockResponse dispatch(@NonNull RecordedRequest request) {
+                final String identity = request.getRequestUrl().queryParameter("identity");
+                return new MockResponse()
+                        .setBody(jwt(identity, hoursFromNow(1)))
+                        .setBodyDelay(100, TimeUnit.MILLISECONDS);
+            }
+        });
+        final AccessTokenManager manager = newManager();
+
+        final Results alice = getToken(manager, "alice");
+        final Results bob = getToken(manager, "bob");
+        assertEquals("alice", identityOf(alice.take()));
+        assertEquals("bob", identityOf(bob.take()));
+        assertEquals(2, server.getRequestCount());
+    }
+
+    @Test
+    public void refreshesAheadOfExpiry() throws Exception {
+        // served once, then refreshed a second later when it enters the refresh margin
+        final String expiringToken = jwt("alice", TimeUnit.MILLISECONDS.toSeconds(
+                System.currentTimeMillis() + AccessTokenManager.REFRESH_MARGIN_MS) + 2);
+        final String refreshedToken = jwt("alice", hoursFromNow(1));
+        server.enqueue(new MockResponse().setBody(expiringToken));
+        server.enqueue(new MockResponse().setBody(refreshedToken));
+        final AccessTokenManager manager = newManager();
+        final BlockingQueue<String> refreshed = new LinkedBlockingQueue<>();
+        manager.addTokenListener(refreshed::add);
+
+        assertEquals(expiringToken, getToken(manager, "alice").take());
+        assertEquals(expiringToken, refreshed.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(refreshedToken, refreshed.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(refreshedToken, manager.getCachedToken("alice"));
+        assertEquals(2, server.getRequestCount());
+    }
+
+    @Test
+    public void reportsServerErrors() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(500));
+        server.enqueue(new MockResponse().setBody(""));
+        final AccessTokenManager manager = newManager();
+
+        assertEquals("error: HTTP 500", getToken(manager, "alice").take());
+        assertEquals("error: empty token", getToken(manager, "alice").take());
+        assertNull(manager.getCachedToken("alice"));
+    }
+
+    @Test
+    public void backsOffFailedRefreshesThenGivesUp() {
+        assertEquals(AccessTokenManager.REFRESH_RETRY_MS,
+                AccessTokenManager.refreshRetryDelayMillis(1));
+        assertEquals(2 * AccessTokenManager.REFRESH_RETRY_MS,
+                AccessTokenManager.refreshRetryDelayMillis(2));
+        long previous = 0;
+        for (int failures = 1; failures < AccessTokenManager.MAX_REFRESH_FAILURES; ++failures) {
+            final long delay = AccessTokenManager.refreshRetryDelayMillis(failures);
+            assertTrue(delay >= previous);
+            assertTrue(delay <= AccessTokenManager.MAX_REFRESH_RETRY_MS);
+            previous = delay;
+        }
+        assertEquals(-1, AccessTokenManager.refreshRetryDelayMillis(
+                AccessTokenManager.MAX_REFRESH_FAILURES));
+    }
+
+    @Test
+    public void invalidateForcesFetch() throws Exception {
+        final String first = jwt("alice", hoursFromNow(1));
+        final String second = jwt("alice", hoursFromNow(2));
+        server.enqueue(new MockResponse().setBody(first));
+        server.enqueue(new MockResponse().setBody(second));
+        final AccessTokenManager manager = newManager();
+
+        assertEquals(first, getToken(manager, "alice").take());
+        manager.invalidate();
+        assertNull(manager.getCachedToken("alice"));
+        assertEquals(second, getToken(manager, "alice").take());
+        assertEquals(2, server.getRequestCount());
+    }
+
+    private AccessTokenManager newManager() {
+        return new AccessTokenManager(preferences,
+                new OkHttpClient(),
+                server.url("/accessToken").toString(),
+                Runnable::run);
+    }
+
+    private static Results getToken(AccessTokenManager manager, String identity) {
+        final Results results = new Results();
+        manager.getToken(identity, results);
+        return results;
+    }
+
+    private static long hoursFromNow(int hours) {
+        return TimeUnit.MILLISECONDS.toSeconds(
+                System.currentTimeMillis() + TimeUnit.HOURS.toMillis(hours));
+    }
+
+    private static String jwt(String identity, long expirySeconds) {
+        final Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        final String header = "{\"alg\":\"HS256\",\"typ\":\"JWT\"}";
+        final String claims = "{\"exp\":" + expirySeconds
+                + ",\"grants\":{\"identity\":\"" + identity + "\"}}";
+        return encoder.encodeToString(header.getBytes(StandardCharsets.UTF_8)) + "."
+                + encoder.encodeToString(claims.getBytes(StandardCharsets.UTF_8)) + ".signature";
+    }
+
+    private static String identityOf(String jwt) {
+        return AccessTokenManager.parseClaims(jwt).optJSONObject("grants").optString("identity");
+    }
+
+    /*
+     * Collects what a callback was handed, errors as "error: <message>".
+     */
+    private static class Results implements AccessTokenManager.Callback {
+        private final BlockingQueue<String> results = new LinkedBlockingQueue<>();
+
+        @Override
+        public void onSuccess(@NonNull String token) {
+            results.add(token);
+        }
+
+        @Override
+        public void onError(@NonNull String error) {
+            results.add("error: " + error);
+        }
+
+        String take() throws InterruptedException {
+            final String result = results.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            assertTrue("no callback", null != result);
+            return result;
+        }
+    }
+
+    /*
+     * In memory SharedPreferences, edits are applied immediately.
+     */
+    private static class FakePreferences implements SharedPreferences {
+        private final Map<String, Object> values = new HashMap<>();
+
+        @Override
+        public synchronized Map<String, ?> getAll() {
+            return new HashMap<>(values);
+        }
+
+        @Nullable
+        @Override
+        public synchronized String getString(String key, @Nullable String defValue) {
+            return values.containsKey(key) ? (String) values.get(key) : defValue;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Nullable
+        @Override
+        public synchronized Set<String> getStringSet(String key, @Nullable Set<String> defValues) {
+            return values.containsKey(key) ? (Set<String>) values.get(key) : defValues;
+        }
+
+        @Override
+        public synchronized int getInt(String key, int defValue) {
+            return values.containsKey(key) ? (Integer) values.get(key) : defValue;
+        }
+
+        @Override
+        public synchronized long getLong(String key, long defValue) {
+            return values.containsKey(key) ? (Long) values.get(key) : defValue;
+        }
+
+        @Override
+        public synchronized float getFloat(String key, float defValue) {
+            return values.containsKey(key) ? (Float) values.get(key) : defValue;
+        }
+
+        @Override
+        public synchronized boolean getBoolean(String key, boolean defValue) {
+            return values.containsKey(key) ? (Boolean) values.get(key) : defValue;
+        }
+
+        @Override
+        public synchronized boolean contains(String key) {
+            return values.containsKey(key);
+        }
+
+        @Override
+        public Editor edit() {
+            return new FakeEditor();
+        }
+
+        @Override
+        public void registerOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
+        }
+
+        @Override
+        public void unregisterOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
+        }
+
+        private class FakeEditor implements Editor {
+            private final Map<String, Object> puts = new HashMap<>();
+            private final List<String> removes = new ArrayList<>();
+            private boolean clear;
+
+            @Override
+            public Editor putString(String key, @Nullable String value) {
+                puts.put(key, value);
+                return this;
+            }
+
+            @Override
+            public Editor putStringSet(String key, @Nullable Set<String> values) {
+                puts.put(key, values);
+                return this;
+            }
+
+            @Override
+            public Editor putInt(String key, int value) {
+                puts.put(key, value);
+                return this;
+            }
+
+            @Override
+            public Editor putLong(String key, long value) {
+                puts.put(key, value);
+                return this;
+            }
+
+            @Override
+            public Editor putFloat(String key, float value) {
+                puts.put(key, value);
+                return this;
+            }
+
+            @Override
+            public Editor putBoolean(String key, boolean value) {
+                puts.put(key, value);
+                return this;
+            }
+
+            @Override
+            public Editor remove(String key) {
+                removes.add(key);
+                return this;
+            }
+
+            @Override
+            public Editor clear() {
+                clear = true;
+                return this;
+            }
+
+            @Override
+            public boolean commit() {
+                synchronized (FakePreferences.this) {
+                    if (clear) {
+                        values.clear();
+                    }
+                    for (String key : removes) {
+                        values.remove(key);
+                    }
+                    values.putAll(puts);
+                }
+                return true;
+            }
+
+            @Override
+            public void apply() {
+                commit();
+            }
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.twilio.examplecustomaudiodevice;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Timing of the four calls that move audio between the device and the SDK, and how old a frame
+ * is when it is handed on. A glitch that shows up here, a slow or late call, a short read or
+ * write or a frame that waited too long, comes from the device side; one that does not comes
+ * from the network or the SDK. Every histogram is lock free and may be read during a call.
+ */
+class AudioPipelineStats {
+    // Render path, owned by the renderer thread
+    final CallbackProbe renderRead;
+    final CallbackProbe trackWrite;
+    // time from the SDK handing a frame over to AudioTrack accepting it
+    final LatencyHistogram renderFrameAge = new LatencyHistogram();
+
+    // Capture path, the microphone reader thread and the capturer thread
+    final CallbackProbe micRead;
+    final CallbackProbe captureWrite;
+    // time from AudioRecord returning a frame to the SDK receiving it
+    final LatencyHistogram captureFrameAge = new LatencyHistogram();
+
+    AudioPipelineStats(int bufferSizeMs) {
+        long periodNanos = TimeUnit.MILLISECONDS.toNanos(bufferSizeMs);
+        renderRead = new CallbackProbe("audioDeviceReadRenderData", periodNanos);
+        trackWrite = new CallbackProbe("AudioTrack.write", periodNanos);
+        micRead = new CallbackProbe("AudioRecord.read", periodNanos);
+        captureWrite = new CallbackProbe("audioDeviceWriteCaptureData", periodNanos);
+    }
+
+    /*
+     * Called before the renderer thread starts.
+     */
+    void resetRender() {
+        renderRead.reset();
+        trackWrite.reset();
+        renderFrameAge.reset();
+    }
+
+    /*
+     * Called before the microphone reader and capturer threads start.
+     */
+    void resetCapture() {
+        micRead.reset();
+        captureWrite.reset();
+        captureFrameAge.reset();
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return renderRead + "\n" + trackWrite + "\nrender frame age[" + renderFrameAge + "]\n"
+                + micRead + "\n" + captureWrite + "\ncapture frame age[" + captureFrameAge + "]";
+    }
+}
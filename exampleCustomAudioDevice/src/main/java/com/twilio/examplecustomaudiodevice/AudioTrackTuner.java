@@ -0,0 +1,125 @@
+package com.twilio.examplecustomaudiodevice;
+
+import android.media.AudioTrack;
+import android.os.Build;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.RequiresApi;
+
+import java.util.Locale;
+
+/*
+ * Keeps an AudioTrack's buffer at the smallest size the device plays without glitches. The track
+ * starts at its minimum, every new underrun grows the buffer by one burst, and after a quiet
+ * period the buffer shrinks by one burst again, never back to a size that has underrun before.
+ * Must be updated from the thread that writes the track.
+ */
+@RequiresApi(api = Build.VERSION_CODES.N)
+class AudioTrackTuner {
+    private static final String TAG = AudioTrackTuner.class.getSimpleName();
+    // time without underruns before a smaller buffer is tried
+    static final long SHRINK_AFTER_MS = 30_000;
+    private static final int HISTORY_SIZE = 16;
+
+    private final AudioTrack audioTrack;
+    private final int sampleRate;
+    private final int burstFrames;
+    private final int minFrames;
+    private final int maxFrames;
+    private final long startMs;
+    // largest size that underran, the tuner does not shrink to it again
+    private int underranFrames;
+    private long lastChangeMs;
+
+    // written by the audio thread, read from any thread
+    private volatile int bufferFrames;
+    private volatile int underrunCount;
+    private volatile int growCount;
+    private volatile int shrinkCount;
+
+    // last size changes, times relative to the start of rendering
+    private final long[] historyTimesMs = new long[HISTORY_SIZE];
+    private final int[] historyFrames = new int[HISTORY_SIZE];
+    private final int[] historyUnderruns = new int[HISTORY_SIZE];
+    private int historyCount;
+
+    AudioTrackTuner(@NonNull AudioTrack audioTrack, int sampleRate, int burstFrames, int minFrames, long nowMs) {
+        this.audioTrack = audioTrack;
+        this.sampleRate = sampleRate;
+        this.burstFrames = Math.max(1, burstFrames);
+        this.maxFrames = audioTrack.getBufferCapacityInFrames();
+        this.minFrames = Math.min(minFrames, maxFrames);
+        this.underrunCount = audioTrack.getUnderrunCount();
+        this.startMs = nowMs;
+        resize(this.minFrames, nowMs);
+    }
+
+    /*
+     * Checks the track's underrun count and resizes its buffer when needed. Cheap enough to call
+     * after every write, only a resize does any work.
+     */
+    void update(long nowMs) {
+        int underruns = audioTrack.getUnderrunCount();
+        if (underruns > underrunCount) {
+            underrunCount = underruns;
+            underranFrames = Math.max(underranFrames, bufferFrames);
+            if (bufferFrames < maxFrames) {
+                growCount++;
+                resize(Math.min(maxFrames, bufferFrames + burstFrames), nowMs);
+            }
+            lastChangeMs = nowMs;
+        } else if (nowMs - lastChangeMs >= SHRINK_AFTER_MS) {
+            int previous = bufferFrames;
+            int smaller = previous - burstFrames;
+            if (smaller >= minFrames && smaller > underranFrames) {
+                resize(smaller, nowMs);
+                if (bufferFrames < previous) {
+                    shrinkCount++;
+                } else {
+                    // the track rounds the size up, smaller sizes are out of reach
+                    underranFrames = smaller;
+                }
+            }
+            lastChangeMs = nowMs;
+        }
+    }
+
+    double getBufferLatencyMs() {
+        return bufferFrames * 1000.0 / sampleRate;
+    }
+
+    @NonNull
+    @Override
+    public synchronized String toString() {
+        StringBuilder builder = new StringBuilder(String.format(Locale.US,
+                "buffer=%d frames (%.1f ms) min=%d max=%d burst=%d underruns=%d grows=%d shrinks=%d",
+                bufferFrames, getBufferLatencyMs(), minFrames, maxFrames, burstFrames,
+                underrunCount, growCount, shrinkCount));
+        int first = Math.max(0, historyCount - HISTORY_SIZE);
+        for (int i = first; i < historyCount; i++) {
+            int slot = i % HISTORY_SIZE;
+            builder.append(String.format(Locale.US, "\n\t+%d ms: %d frames after %d underruns",
+                    historyTimesMs[slot], historyFrames[slot], historyUnderruns[slot]));
+        }
+        return builder.toString();
+    }
+
+    private void resize(int frames, long nowMs) {
+        int actual = audioTrack.setBufferSizeInFrames(frames);
+        if (actual <= 0) {
+            Log.e(TAG, "AudioTrack.setBufferSizeInFrames(" + frames + ") failed: " + actual);
+            return;
+        }
+        bufferFrames = actual;
+        lastChangeMs = nowMs;
+        // only taken on a resize, which is rare, and by readers of the history
+        synchronized (this) {
+            int slot = historyCount % HISTORY_SIZE;
+            historyTimesMs[slot] = nowMs - startMs;
+            historyFrames[slot] = actual;
+            historyUnderruns[slot] = underrunCount;
+            historyCount++;
+        }
+    }
+}
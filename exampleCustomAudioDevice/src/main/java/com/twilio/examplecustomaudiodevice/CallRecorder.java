@@ -0,0 +1,276 @@
+package com.twilio.examplecustomaudiodevice;
+
+import android.os.Process;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ * Records both directions of a call into a stereo WAV file, the local audio on the left channel
+ * and the remote audio on the right. The audio threads copy each 10 ms frame into a preallocated
+ * FrameRing and return; they never block or allocate, a frame that finds its ring full is dropped
+ * and counted. A background thread pairs the frames, converts them to a common mono format,
+ * interleaves them and writes them to a FileChannel in batches. When the recording stops the
+ * same thread writes what is left, patches the WAV header with the final sizes, closes the file
+ * and then runs the completion callback, so stopping never does file I/O on or waits on the
+ * caller's thread.
+ */
+class CallRecorder {
+    private static final String TAG = CallRecorder.class.getSimpleName();
+    private static final int WAV_HEADER_SIZE = 44;
+    private static final int FRAME_DURATION_MS = 10;
+    // frames buffered per direction, covers the writer's polling interval and slow file writes
+    static final int DEFAULT_DEPTH = 50;
+    // frames written to the file at once
+    private static final int BATCH_FRAMES = 25;
+    private static final long POLL_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+    // a direction that stays this many frames behind is padded with silence, e.g. while on hold
+    private static final int MAX_LAG_FRAMES = 10;
+
+    private final File file;
+    private final int sampleRate;
+    private final FrameRing localRing;
+    private final FrameRing remoteRing;
+    // convert each direction to mono at sampleRate, null when it already is
+    private final FormatConverter localConverter;
+    private final FormatConverter remoteConverter;
+    private final ByteBuffer batch;
+    private final ByteBuffer silence;
+
+    private FileChannel channel;
+    private Thread writerThread;
+    private Runnable onFinished;
+    private volatile boolean running;
+    private volatile long framesWritten;
+    private volatile long paddedFrames;
+    private volatile long writeErrors;
+
+    /*
+     * The file is written at the local sample rate, remote audio is resampled to it.
+     */
+    CallRecorder(@NonNull File file,
+                 int localSampleRate,
+                 int localChannels,
+                 int remoteSampleRate,
+                 int remoteChannels,
+                 int depth) {
+        this.file = file;
+        this.sampleRate = localSampleRate;
+        localRing = new FrameRing(depth, frameSize(localSampleRate, localChannels));
+        remoteRing = new FrameRing(depth, frameSize(remoteSampleRate, remoteChannels));
+        localConverter = (localChannels == 1) ? null
+                : new FormatConverter(localSampleRate, localChannels, sampleRate, 1, FRAME_DURATION_MS);
+        remoteConverter = (remoteSampleRate == sampleRate && remoteChannels == 1) ? null
+                : new FormatConverter(remoteSampleRate, remoteChannels, sampleRate, 1, FRAME_DURATION_MS);
+        int samplesPerFrame = sampleRate * FRAME_DURATION_MS / 1000;
+        batch = ByteBuffer.allocateDirect(BATCH_FRAMES * samplesPerFrame * 4).order(ByteOrder.LITTLE_ENDIAN);
+        silence = ByteBuffer.allocateDirect(samplesPerFrame * 2).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /*
+     * Creates the file and starts the writer. onFinished runs on the writer thread once the file
+     * is complete, however the recording was stopped.
+     */
+    void start(@Nullable Runnable onFinished) throws IOException {
+        channel = new RandomAccessFile(file, "rw").getChannel();
+        try {
+            channel.truncate(0);
+            ByteBuffer header = wavHeader(0);
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+        } catch (IOException e) {
+            // closing the channel closes the RandomAccessFile it came from
+            try {
+                channel.close();
+            } catch (IOException closeException) {
+                e.addSuppressed(closeException);
+            }
+            throw e;
+        }
+        this.onFinished = onFinished;
+        running = true;
+        writerThread = new Thread(this::drain, "CallRecorderThread");
+        writerThread.start();
+    }
+
+    /*
+     * Stops the writer, which writes what is buffered and finalizes the file in the background.
+     * Returns immediately.
+     */
+    void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(writerThread);
+    }
+
+    /*
+     * Called on the capture thread with the frame sent to the SDK. Copies it and returns.
+     */
+    void recordLocal(@NonNull ByteBuffer frame) {
+        copy(frame, localRing);
+    }
+
+    /*
+     * Called on the render thread with the frame read from the SDK. Copies it and returns.
+     */
+    void recordRemote(@NonNull ByteBuffer frame) {
+        copy(frame, remoteRing);
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "written=" + framesWritten + " droppedLocal=" + localRing.getOverruns()
+                + " droppedRemote=" + remoteRing.getOverruns() + " padded=" + paddedFrames
+                + " writeErrors=" + writeErrors;
+    }
+
+    private static void copy(ByteBuffer frame, FrameRing ring) {
+        ByteBuffer slot = ring.claim();
+        if (slot == null) {
+            return;
+        }
+        int position = frame.position();
+        int limit = frame.limit();
+        frame.limit(Math.min(limit, position + slot.capacity()));
+        slot.put(frame);
+        frame.limit(limit).position(position);
+        slot.flip();
+        ring.publish();
+    }
+
+    private void drain() {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+        while (true) {
+            boolean stopping = !running;
+            while (writePair(stopping)) {
+                if (!batch.hasRemaining()) {
+                    flush();
+                }
+            }
+            if (stopping) {
+                break;
+            }
+            LockSupport.parkNanos(POLL_INTERVAL_NANOS);
+        }
+        flush();
+        finish();
+        if (onFinished != null) {
+            onFinished.run();
+        }
+    }
+
+    /*
+     * Patches the WAV header with the final sizes and closes the file, on the writer thread.
+     */
+    private void finish() {
+        try {
+            long dataSize = channel.size() - WAV_HEADER_SIZE;
+            ByteBuffer header = wavHeader(dataSize);
+            long position = 0;
+            while (header.hasRemaining()) {
+                position += channel.write(header, position);
+            }
+            channel.close();
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to finalize " + file + ": " + e.getMessage());
+        }
+        Log.d(TAG, "Recorded " + file + ", " + this);
+    }
+
+    /*
+     * Interleaves the oldest local and remote frames into the batch. A direction that fell too far
+     * behind, or that has nothing left once stopping, is replaced with silence. Returns false
+     * when there is nothing to write yet.
+     */
+    private boolean writePair(boolean stopping) {
+        int localQueued = localRing.size();
+        int remoteQueued = remoteRing.size();
+        boolean hasLocal = localQueued > 0;
+        boolean hasRemote = remoteQueued > 0;
+        if (!hasLocal && !hasRemote) {
+            return false;
+        }
+        if (!(hasLocal && hasRemote) && !stopping
+                && Math.max(localQueued, remoteQueued) < MAX_LAG_FRAMES) {
+            return false;
+        }
+        ByteBuffer local = hasLocal ? localRing.peek() : null;
+        ByteBuffer remote = hasRemote ? remoteRing.peek() : null;
+        ByteBuffer left = (local == null) ? silence
+                : (localConverter != null) ? localConverter.process(local) : local;
+        ByteBuffer right = (remote == null) ? silence
+                : (remoteConverter != null) ? remoteConverter.process(remote) : remote;
+        int samples = silence.capacity() / 2;
+        int base = batch.position();
+        for (int i = 0; i < samples; i++) {
+            int leftIndex = left.position() + i * 2;
+            int rightIndex = right.position() + i * 2;
+            batch.putShort(base + i * 4, (leftIndex + 1 < left.limit()) ? left.getShort(leftIndex) : 0);
+            batch.putShort(base + i * 4 + 2, (rightIndex + 1 < right.limit()) ? right.getShort(rightIndex) : 0);
+        }
+        batch.position(base + samples * 4);
+        if (local != null) {
+            localRing.release();
+        }
+        if (remote != null) {
+            remoteRing.release();
+        }
+        if (local == null || remote == null) {
+            paddedFrames++;
+        }
+        framesWritten++;
+        return true;
+    }
+
+    private void flush() {
+        batch.flip();
+        try {
+            while (batch.hasRemaining()) {
+                channel.write(batch);
+            }
+        } catch (IOException e) {
+            writeErrors++;
+            Log.e(TAG, "Failed to write " + file + ": " + e.getMessage());
+        }
+        batch.clear();
+    }
+
+    private ByteBuffer wavHeader(long dataSize) {
+        int channels = 2;
+        int blockAlign = channels * 2;
+        ByteBuffer header = ByteBuffer.allocate(WAV_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(0x46464952) // "RIFF"
+                .putInt((int) Math.min(0xffffffffL, 36 + dataSize))
+                .putInt(0x45564157) // "WAVE"
+                .putInt(0x20746d66) // "fmt "
+                .putInt(16)
+                .putShort((short) 1) // PCM
+                .putShort((short) channels)
+                .putInt(sampleRate)
+                .putInt(sampleRate * blockAlign)
+                .putShort((short) blockAlign)
+                .putShort((short) 16)
+                .putInt(0x61746164) // "data"
+                .putInt((int) Math.min(0xffffffffL, dataSize));
+        header.flip();
+        return header;
+    }
+
+    private static int frameSize(int sampleRate, int channels) {
+        return sampleRate * FRAME_DURATION_MS / 1000 * channels * 2;
+    }
+}
@@ -0,0 +1,69 @@
+package com.twilio.examplecustomaudiodevice;
+
+import androidx.annotation.NonNull;
+
+/*
+ * Times one blocking audio call made periodically by a single thread: how long each call takes,
+ * how far the interval between two calls strays from the expected period, and how many calls
+ * moved less audio than asked for. Recording costs two System.nanoTime() calls and never
+ * allocates or locks, the results can be read from any thread.
+ */
+class CallbackProbe {
+    private final String name;
+    private final long periodNanos;
+    private final LatencyHistogram duration = new LatencyHistogram();
+    private final LatencyHistogram jitter = new LatencyHistogram();
+    // owned by the calling thread, 0 until the first call
+    private long lastStartNanos;
+    private volatile long shortCount;
+
+    CallbackProbe(@NonNull String name, long periodNanos) {
+        this.name = name;
+        this.periodNanos = periodNanos;
+    }
+
+    /*
+     * Called right before the timed call, returns the start time to hand to end().
+     */
+    long begin() {
+        long now = System.nanoTime();
+        if (lastStartNanos != 0) {
+            jitter.recordNanos(Math.abs(now - lastStartNanos - periodNanos));
+        }
+        lastStartNanos = now;
+        return now;
+    }
+
+    /*
+     * Called right after the timed call, returns the end time.
+     */
+    long end(long startNanos) {
+        long now = System.nanoTime();
+        duration.recordNanos(now - startNanos);
+        return now;
+    }
+
+    void countShort() {
+        shortCount++;
+    }
+
+    long getShortCount() {
+        return shortCount;
+    }
+
+    /*
+     * Starts over, for a new call. The next interval is not measured across the gap.
+     */
+    void reset() {
+        duration.reset();
+        jitter.reset();
+        shortCount = 0;
+        lastStartNanos = 0;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return name + ": time[" + duration + "] jitter[" + jitter + "] short=" + shortCount;
+    }
+}
@@ -0,0 +1,134 @@
+package com.twilio.examplecustomaudiodevice;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/*
+ * Mixes the music file and the microphone into one 16 bit capture frame. Each source has a gain
+ * that any thread may change at any time without locking, the capturer thread ramps the applied
+ * gain towards it over a short crossfade so changes never click. Samples are mixed in Q15 fixed
+ * point and saturated to the int16 range.
+ */
+class CaptureMixer {
+    static final int SOURCE_FILE = 0;
+    static final int SOURCE_MICROPHONE = 1;
+    private static final int SOURCE_COUNT = 2;
+    // gain 1.0 in Q15
+    static final int UNITY_GAIN = 1 << 15;
+    // just below 2.0, the largest gain whose product with a full scale sample fits an int
+    private static final int MAX_GAIN = 0xffff;
+
+    private final int samplesPerFrame;
+    private final int crossfadeSamples;
+    private final ByteBuffer mixFrame;
+    // written by any thread, read by the capturer thread once per frame
+    private final AtomicIntegerArray targetGains = new AtomicIntegerArray(SOURCE_COUNT);
+    // owned by the capturer thread
+    private final int[] gains = new int[SOURCE_COUNT];
+    private final int[] rampTargets = new int[SOURCE_COUNT];
+    private final int[] gainSteps = new int[SOURCE_COUNT];
+    private final int[] rampRemaining = new int[SOURCE_COUNT];
+    private volatile long clippedSamples;
+
+    CaptureMixer(int samplesPerFrame, int crossfadeSamples) {
+        this.samplesPerFrame = samplesPerFrame;
+        this.crossfadeSamples = Math.max(1, crossfadeSamples);
+        this.mixFrame = ByteBuffer.allocateDirect(samplesPerFrame * 2).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /*
+     * Sets the gain of a source, 0 mutes it and 1 leaves it unchanged. Safe from any thread, the
+     * capturer picks it up on its next frame and fades to it.
+     */
+    void setGain(int source, float gain) {
+        targetGains.set(source, Math.max(0, Math.min(MAX_GAIN, Math.round(gain * UNITY_GAIN))));
+    }
+
+    float getGain(int source) {
+        return (float) targetGains.get(source) / UNITY_GAIN;
+    }
+
+    /*
+     * True while the source is or will be audible, the capturer may skip reading silent sources.
+     */
+    boolean isAudible(int source) {
+        return gains[source] != 0 || rampRemaining[source] != 0 || targetGains.get(source) != 0;
+    }
+
+    long getClippedSamples() {
+        return clippedSamples;
+    }
+
+    /*
+     * Mixes one frame of each source, a null source contributes silence. The returned buffer is
+     * owned by the mixer and overwritten by the next call.
+     */
+    @NonNull
+    ByteBuffer mix(@Nullable ByteBuffer file, @Nullable ByteBuffer microphone) {
+        updateRamps();
+        if (file != null) {
+            file.order(ByteOrder.LITTLE_ENDIAN);
+        }
+        if (microphone != null) {
+            microphone.order(ByteOrder.LITTLE_ENDIAN);
+        }
+        int fileBase = (file != null) ? file.position() : 0;
+        int fileSamples = (file != null) ? (file.limit() - fileBase) / 2 : 0;
+        int micBase = (microphone != null) ? microphone.position() : 0;
+        int micSamples = (microphone != null) ? (microphone.limit() - micBase) / 2 : 0;
+        for (int i = 0; i < samplesPerFrame; i++) {
+            int fileGain = nextGain(SOURCE_FILE);
+            int micGain = nextGain(SOURCE_MICROPHONE);
+            int sum = 0;
+            if (i < fileSamples && fileGain != 0) {
+                sum += (file.getShort(fileBase + i * 2) * fileGain) >> 15;
+            }
+            if (i < micSamples && micGain != 0) {
+                sum += (microphone.getShort(micBase + i * 2) * micGain) >> 15;
+            }
+            if (sum > Short.MAX_VALUE) {
+                sum = Short.MAX_VALUE;
+                clippedSamples++;
+            } else if (sum < Short.MIN_VALUE) {
+                sum = Short.MIN_VALUE;
+                clippedSamples++;
+            }
+            mixFrame.putShort(i * 2, (short) sum);
+        }
+        mixFrame.clear();
+        return mixFrame;
+    }
+
+    /*
+     * Starts a linear ramp for every source whose target changed since the last frame, a ramp in
+     * progress is restarted from the current gain.
+     */
+    private void updateRamps() {
+        for (int source = 0; source < SOURCE_COUNT; source++) {
+            int target = targetGains.get(source);
+            if (target == rampTargets[source]) {
+                continue;
+            }
+            rampTargets[source] = target;
+            int delta = target - gains[source];
+            rampRemaining[source] = (delta == 0) ? 0 : crossfadeSamples;
+            gainSteps[source] = delta / crossfadeSamples;
+        }
+    }
+
+    private int nextGain(int source) {
+        int remaining = rampRemaining[source];
+        if (remaining == 0) {
+            return gains[source];
+        }
+        remaining--;
+        rampRemaining[source] = remaining;
+        // the last step lands exactly on the target whatever the rounding of the step
+        gains[source] = (remaining == 0) ? rampTargets[source] : gains[source] + gainSteps[source];
+        return gains[source];
+    }
+}
@@ -0,0 +1,122 @@
+package com.twilio.examplecustomaudiodevice;
+
+import android.os.Handler;
+
+import androidx.annotation.NonNull;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Runs a frame callback on a Handler at a fixed rate. Every frame has an absolute deadline on the
+ * monotonic clock (start + n * period), so the time spent in the callback and the Handler's jitter
+ * never accumulate into drift. When the thread falls behind, the missed frames are produced back
+ * to back; when it falls too far behind, the backlog is dropped and counted instead of being
+ * burst into the consumer.
+ */
+class CaptureScheduler {
+    // frames produced in a single tick when catching up
+    static final int MAX_CATCH_UP_FRAMES = 5;
+
+    private final Handler handler;
+    private final long periodNanos;
+    private final Runnable frameCallback;
+    // a frame is late once it is produced more than half a period after its deadline
+    private final long lateThresholdNanos;
+
+    private volatile boolean running;
+    private long startNanos;
+    // frames scheduled since start, including skipped ones
+    private long nextFrame;
+
+    // written on the handler thread only, read from any thread by toString()
+    private volatile long deliveredFrames;
+    private volatile long lateFrames;
+    private volatile long skippedFrames;
+    private volatile long resyncCount;
+    private volatile long maxLatenessNanos;
+    private volatile long totalLatenessNanos;
+    // how far the last produced frame was behind its deadline, bounded on a healthy schedule
+    private volatile long driftNanos;
+
+    private final Runnable tick = this::onTick;
+    private final Runnable anchor = this::onAnchor;
+
+    CaptureScheduler(@NonNull Handler handler, long periodMs, @NonNull Runnable frameCallback) {
+        this.handler = handler;
+        this.periodNanos = TimeUnit.MILLISECONDS.toNanos(periodMs);
+        this.lateThresholdNanos = periodNanos / 2;
+        this.frameCallback = frameCallback;
+    }
+
+    /*
+     * Anchors the schedule at the current time and produces the first frame right away. Restarting
+     * a running scheduler re-anchors it, the statistics are kept.
+     */
+    void start() {
+        handler.removeCallbacks(anchor);
+        running = true;
+        handler.post(anchor);
+    }
+
+    void stop() {
+        running = false;
+        handler.removeCallbacks(anchor);
+        handler.removeCallbacks(tick);
+    }
+
+    private long getMeanLatenessNanos() {
+        long delivered = deliveredFrames;
+        return (delivered > 0) ? totalLatenessNanos / delivered : 0;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return String.format(Locale.US,
+                "delivered=%d late=%d skipped=%d resyncs=%d drift=%.2fms mean=%.2fms max=%.2fms",
+                deliveredFrames, lateFrames, skippedFrames, resyncCount,
+                driftNanos / 1e6, getMeanLatenessNanos() / 1e6, maxLatenessNanos / 1e6);
+    }
+
+    private void onAnchor() {
+        handler.removeCallbacks(tick);
+        startNanos = System.nanoTime();
+        nextFrame = 0;
+        onTick();
+    }
+
+    private void onTick() {
+        if (!running) {
+            return;
+        }
+        long now = System.nanoTime();
+        long due = (now - startNanos) / periodNanos + 1;
+        if (due - nextFrame > MAX_CATCH_UP_FRAMES) {
+            // too far behind to catch up without flooding the consumer, drop the backlog
+            skippedFrames += due - nextFrame - 1;
+            resyncCount++;
+            nextFrame = due - 1;
+        }
+        for (int i = 0; i < MAX_CATCH_UP_FRAMES && nextFrame < due && running; i++) {
+            frameCallback.run();
+            long lateness = System.nanoTime() - (startNanos + nextFrame * periodNanos);
+            nextFrame++;
+            deliveredFrames++;
+            totalLatenessNanos += lateness;
+            driftNanos = lateness;
+            if (lateness > lateThresholdNanos) {
+                lateFrames++;
+            }
+            if (lateness > maxLatenessNanos) {
+                maxLatenessNanos = lateness;
+            }
+        }
+        if (running) {
+            // round up so the next tick never runs before its deadline
+            long remainingNanos = startNanos + nextFrame * periodNanos - System.nanoTime();
+            long delayMs = Math.max(0, (remainingNanos + 999_999) / 1_000_000);
+            handler.postDelayed(tick, delayMs);
+        }
+    }
+}
@@ -23,6 +23,7 @@ import android.view.Window;
 import android.view.WindowManager;
 import android.widget.Chronometer;
 import android.widget.EditText;
+import android.widget.SeekBar;
 
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
@@ -41,6 +42,8 @@ import com.twilio.voice.RegistrationException;
 import com.twilio.voice.RegistrationListener;
 import com.twilio.voice.Voice;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Locale;
 
@@ -48,6 +51,8 @@ public class CustomDeviceActivity extends AppCompatActivity {
 
     private static final String TAG = "CustomDeviceActivity";
     private static final int MIC_PERMISSION_REQUEST_CODE = 1;
+    // the gain sliders go from 0 to twice the unity gain
+    private static final int UNITY_GAIN_PROGRESS = 100;
 
     private String accessToken = "PASTE_YOUR_ACCESS_TOKEN_HERE";
     private AudioManager audioManager;
@@ -66,6 +71,8 @@ public class CustomDeviceActivity extends AppCompatActivity {
 
     private AlertDialog alertDialog;
     private Call activeCall;
+    private int musicGainProgress = UNITY_GAIN_PROGRESS;
+    private int microphoneGainProgress = UNITY_GAIN_PROGRESS;
 
     Call.Listener callListener = callListener();
     FileAndMicAudioDevice fileAndMicAudioDevice;
@@ -231,6 +238,7 @@ public class CustomDeviceActivity extends AppCompatActivity {
         chronometer.setVisibility(View.VISIBLE);
         chronometer.setBase(SystemClock.elapsedRealtime());
         chronometer.start();
+        invalidateOptionsMenu();
     }
 
     /*
@@ -248,6 +256,8 @@ public class CustomDeviceActivity extends AppCompatActivity {
         inputSwitchFab.hide();
         chronometer.setVisibility(View.INVISIBLE);
         chronometer.stop();
+        stopCallRecording();
+        invalidateOptionsMenu();
     }
 
     @Override
@@ -424,6 +434,19 @@ public class CustomDeviceActivity extends AppCompatActivity {
         return true;
     }
 
+    @Override
+    public boolean onPrepareOptionsMenu(Menu menu) {
+        // calls can only be recorded while they last, the recording stops with the call
+        MenuItem recordItem = menu.findItem(R.id.record_call_menu_item);
+        recordItem.setVisible(activeCall != null);
+        recordItem.setTitle(fileAndMicAudioDevice.isCallRecording()
+                ? R.string.stop_recording : R.string.record_call);
+        menu.findItem(R.id.audio_stats_menu_item).setVisible(activeCall != null);
+        menu.findItem(R.id.comfort_noise_menu_item)
+                .setChecked(fileAndMicAudioDevice.isComfortNoiseEnabled());
+        return true;
+    }
+
     @Override
     public boolean onOptionsItemSelected(MenuItem item) {
         if (item.getItemId() == R.id.speaker_menu_item) {
@@ -434,10 +457,129 @@ public class CustomDeviceActivity extends AppCompatActivity {
                 audioManager.setSpeakerphoneOn(true);
                 item.setIcon(R.drawable.ic_volume_up_white_24dp);
             }
+        } else if (item.getItemId() == R.id.mix_levels_menu_item) {
+            createMixLevelsDialog().show();
+        } else if (item.getItemId() == R.id.record_call_menu_item) {
+            if (fileAndMicAudioDevice.isCallRecording()) {
+                stopCallRecording();
+            } else {
+                startCallRecording();
+            }
+            invalidateOptionsMenu();
+        } else if (item.getItemId() == R.id.audio_stats_menu_item) {
+            showAudioStats();
+        } else if (item.getItemId() == R.id.comfort_noise_menu_item) {
+            fileAndMicAudioDevice.setComfortNoiseEnabled(!item.isChecked());
+            item.setChecked(fileAndMicAudioDevice.isComfortNoiseEnabled());
         }
         return true;
     }
 
+    /*
+     * Snapshot of the timing of the audio device's callbacks, the AudioTrack buffer size and the
+     * talk time during the call, to tell glitches caused on the device from those coming from the
+     * network.
+     */
+    private void showAudioStats() {
+        String stats = fileAndMicAudioDevice.getPipelineStats()
+                + "\n" + fileAndMicAudioDevice.getRenderStats()
+                + "\n" + fileAndMicAudioDevice.getTalkStats();
+        Log.d(TAG, "Audio stats\n" + stats);
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.audio_stats)
+                .setMessage(stats)
+                .setPositiveButton(android.R.string.ok, null)
+                .show();
+    }
+
+    /*
+     * Records both sides of the call into a WAV file in the app's external files directory, pull
+     * it with adb or a file manager.
+     */
+    private void startCallRecording() {
+        File directory = getExternalFilesDir(null);
+        File file = new File((directory != null) ? directory : getFilesDir(),
+                "call-" + System.currentTimeMillis() + ".wav");
+        try {
+            fileAndMicAudioDevice.startCallRecording(file, (recordedFile, stats) -> {
+                String message = "Recorded " + recordedFile.getName() + ", " + stats;
+                Log.d(TAG, message);
+                runOnUiThread(() -> {
+                    if (!isDestroyed()) {
+                        Snackbar.make(coordinatorLayout, message, Snackbar.LENGTH_LONG).show();
+                    }
+                });
+            });
+        } catch (IOException e) {
+            String message = "Failed to record call: " + e.getMessage();
+            Log.e(TAG, message);
+            Snackbar.make(coordinatorLayout, message, Snackbar.LENGTH_LONG).show();
+        }
+    }
+
+    /*
+     * Returns at once, the recording's stats are shown once its file is complete.
+     */
+    private void stopCallRecording() {
+        fileAndMicAudioDevice.stopCallRecording();
+    }
+
+    /*
+     * Sliders for the gains of the music file and the microphone in the capture mix, the changes
+     * are applied while the sliders move.
+     */
+    private AlertDialog createMixLevelsDialog() {
+        View dialogView = LayoutInflater.from(this).inflate(
+                R.layout.dialog_gain,
+                findViewById(android.R.id.content),
+                false);
+        SeekBar musicGain = dialogView.findViewById(R.id.music_gain);
+        musicGain.setProgress(musicGainProgress);
+        musicGain.setOnSeekBarChangeListener(progressChangeListener(progress -> {
+            musicGainProgress = progress;
+            fileAndMicAudioDevice.setMusicGain((float) progress / UNITY_GAIN_PROGRESS);
+        }));
+        SeekBar microphoneGain = dialogView.findViewById(R.id.microphone_gain);
+        microphoneGain.setProgress(microphoneGainProgress);
+        microphoneGain.setOnSeekBarChangeListener(progressChangeListener(progress -> {
+            microphoneGainProgress = progress;
+            fileAndMicAudioDevice.setMicrophoneGain((float) progress / UNITY_GAIN_PROGRESS);
+        }));
+        // one 10 ms frame per step, the first step is a single frame
+        SeekBar microphoneBuffer = dialogView.findViewById(R.id.microphone_buffer);
+        microphoneBuffer.setProgress(fileAndMicAudioDevice.getMicrophoneBufferFrames() - 1);
+        microphoneBuffer.setOnSeekBarChangeListener(progressChangeListener(progress ->
+                fileAndMicAudioDevice.setMicrophoneBufferFrames(progress + 1)));
+        return new AlertDialog.Builder(this)
+                .setTitle(R.string.mix_levels)
+                .setView(dialogView)
+                .setPositiveButton(android.R.string.ok, null)
+                .create();
+    }
+
+    private interface ProgressListener {
+        void onProgressChanged(int progress);
+    }
+
+    private static SeekBar.OnSeekBarChangeListener progressChangeListener(final ProgressListener listener) {
+        return new SeekBar.OnSeekBarChangeListener() {
+            @Override
+            public void onProgressChanged(SeekBar seekBar, int progress, boolean fromUser) {
+                if (fromUser) {
+                    listener.onProgressChanged(progress);
+                }
+            }
+
+            @Override
+            public void onStartTrackingTouch(SeekBar seekBar) {
+            }
+
+            @Override
+            public void onStopTrackingTouch(SeekBar seekBar) {
+            }
+        };
+    }
+
     private static AlertDialog createCallDialog(final DialogInterface.OnClickListener callClickListener,
                                                 final DialogInterface.OnClickListener cancelClickListener,
                                                 final Activity activity) {
@@ -1,6 +1,9 @@
 package com.twilio.examplecustomaudiodevice;
 
 import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.content.res.Resources;
+import android.media.AudioAttributes;
 import android.media.AudioManager;
 import android.media.AudioRecord;
 import android.media.AudioTrack;
@@ -9,6 +12,7 @@ import android.os.Build;
 import android.os.Handler;
 import android.os.HandlerThread;
 import android.os.Process;
+import android.os.SystemClock;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
@@ -19,10 +23,11 @@ import com.twilio.voice.AudioDevice;
 import com.twilio.voice.AudioDeviceContext;
 import com.twilio.voice.AudioFormat;
 
-import java.io.DataInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
 public class FileAndMicAudioDevice implements AudioDevice {
     private static final String TAG = FileAndMicAudioDevice.class.getSimpleName();
@@ -40,74 +45,131 @@ public class FileAndMicAudioDevice implements AudioDevice {
     // Ask for a buffer size of BUFFER_SIZE_FACTOR * (minimum required buffer size). The extra space
     // is allocated to guard against glitches under high load.
     private static final int BUFFER_SIZE_FACTOR = 2;
-    private static final int WAV_FILE_HEADER_SIZE = 44;
+    // Length of the fade applied when a source is switched on or off or its gain changes.
+    private static final int CROSSFADE_MS = 20;
+    // Capacity of the AudioTrack buffer, the tuner only uses as much of it as the device needs.
+    private static final int MAX_RENDER_BUFFER_MS = 100;
+    // Writes between two checks of the AudioTrack underrun count.
+    private static final int TUNE_INTERVAL_BUFFERS = 10;
+    // Microphone frames buffered between AudioRecord and the capture schedule by default.
+    private static final int DEFAULT_MIC_BUFFER_FRAMES = 4;
 
-    private ByteBuffer fileWriteByteBuffer;
-    private int writeBufferSize;
-    private InputStream inputStream;
-    private DataInputStream dataInputStream;
+    /*
+     * Told on the recorder's writer thread once a call recording file is complete.
+     */
+    public interface CallRecordingListener {
+        void onCallRecordingFinished(@NonNull File file, @NonNull String stats);
+    }
+
+    // Memory mapped music file, opened once and kept across calls and input switches.
+    private WavSource wavSource;
+    // Converts the music file to the capturer format, null when the file already matches it.
+    private FormatConverter fileConverter;
 
     private AudioRecord audioRecord;
+    // Microphone frames read by micReaderThread and consumed by captureRunnable.
+    private FrameRing micRing;
+    private volatile int micBufferFrames = DEFAULT_MIC_BUFFER_FRAMES;
+    // Receives the microphone audio that is dropped while micRing is full.
     private ByteBuffer micWriteBuffer;
+    private Thread micReaderThread;
+    private volatile boolean isRecording;
+
+    // Mixes the music file and the microphone into the frame handed to the SDK.
+    private CaptureMixer captureMixer;
+    // Tells speech from silence on the microphone and counts the talk time of the call.
+    private VoiceActivityDetector voiceActivityDetector;
+    private volatile boolean isComfortNoiseEnabled;
 
     private ByteBuffer readByteBuffer;
     private AudioTrack audioTrack = null;
+    // Sample rate of the device's output path, rendering at it keeps the track on the fast mixer.
+    private final int rendererSampleRate;
+    private final int outputFramesPerBurst;
+    // Sizes the AudioTrack buffer from its underruns, null before Android N.
+    private volatile AudioTrackTuner audioTrackTuner;
+
+    // Records both directions of the call while set, the audio threads only hand it frames.
+    private volatile CallRecorder callRecorder;
+
+    // Per-callback timing, short reads and writes and frame ages of both directions.
+    private final AudioPipelineStats pipelineStats = new AudioPipelineStats(CALLBACK_BUFFER_SIZE_MS);
 
     // Handlers and Threads
     private Handler capturerHandler;
     private HandlerThread capturerThread;
+    // Paces captureRunnable against absolute deadlines so the file plays in real time.
+    private CaptureScheduler captureScheduler;
     private Handler rendererHandler;
     private HandlerThread rendererThread;
 
     private AudioDeviceContext renderingAudioDeviceContext;
     private AudioDeviceContext capturingAudioDeviceContext;
     // By default music capturer is enabled
-    private boolean isMusicPlaying = true;
+    private volatile boolean isMusicPlaying = true;
+    private volatile float musicGain = 1f;
 
     /*
-     * This Runnable reads a music file and provides the audio frames to the AudioDevice API via
-     * AudioDevice.audioDeviceWriteCaptureData(..) until there is no more data to be read, the
-     * capturer input switches to the microphone, or the call ends.
+     * This Runnable mixes one frame of the music file and the microphone and provides it to the
+     * AudioDevice API via AudioDevice.audioDeviceWriteCaptureData(..). It is run by
+     * captureScheduler every CALLBACK_BUFFER_SIZE_MS until the call ends. The file only advances
+     * while it is audible, the microphone frame is read in place from micRing and left unmodified
+     * for the voice activity detector, the mix goes to a frame owned by captureMixer. While nobody
+     * speaks and no music plays the mix may be replaced with comfort noise.
      */
-    private final Runnable fileCapturerRunnable = () -> {
-        Process.setThreadPriority(Process.THREAD_PRIORITY_URGENT_AUDIO);
-        int bytesRead;
-        try {
-            if (dataInputStream != null && (bytesRead = dataInputStream.read(fileWriteByteBuffer.array(), 0, writeBufferSize)) > -1) {
-                if (bytesRead == fileWriteByteBuffer.capacity()) {
-                    AudioDevice.audioDeviceWriteCaptureData(capturingAudioDeviceContext, fileWriteByteBuffer);
-                } else {
-                    processRemaining(fileWriteByteBuffer, fileWriteByteBuffer.capacity());
-                    AudioDevice.audioDeviceWriteCaptureData(capturingAudioDeviceContext, fileWriteByteBuffer);
-                }
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
+    private final Runnable captureRunnable = () -> {
+        boolean fileAudible = captureMixer.isAudible(CaptureMixer.SOURCE_FILE);
+        ByteBuffer file = fileAudible ? nextFileFrame() : null;
+        ByteBuffer microphone = isRecording ? micRing.peek() : null;
+        ByteBuffer frame = captureMixer.mix(file, microphone);
+        boolean speech = voiceActivityDetector.process(
+                captureMixer.isAudible(CaptureMixer.SOURCE_MICROPHONE) ? microphone : null);
+        if (!speech && !fileAudible && isComfortNoiseEnabled) {
+            frame = voiceActivityDetector.comfortNoise();
+        }
+        CallRecorder recorder = callRecorder;
+        if (recorder != null) {
+            recorder.recordLocal(frame);
+        }
+        long start = pipelineStats.captureWrite.begin();
+        if (microphone != null) {
+            pipelineStats.captureFrameAge.recordNanos(start - micRing.peekTime());
+        }
+        AudioDevice.audioDeviceWriteCaptureData(capturingAudioDeviceContext, frame);
+        pipelineStats.captureWrite.end(start);
+        if (microphone != null) {
+            micRing.release();
         }
-        capturerHandler.postDelayed(this.fileCapturerRunnable, CALLBACK_BUFFER_SIZE_MS);
     };
 
     /*
-     * This Runnable reads data from the microphone and provides the audio frames to the AudioDevice
-     * API via AudioDevice.audioDeviceWriteCaptureData(..) until the capturer input switches to
-     * microphone or the call ends.
+     * This Runnable reads the microphone on micReaderThread with blocking AudioRecord.read(..) calls
+     * straight into the frames of micRing until recording stops. A stall in the SDK only fills
+     * the ring and a stall of the microphone only empties it, neither blocks the other side.
      */
-    private final Runnable microphoneCapturerRunnable = () -> {
+    private final Runnable microphoneReaderRunnable = () -> {
         Process.setThreadPriority(Process.THREAD_PRIORITY_URGENT_AUDIO);
-        audioRecord.startRecording();
-        while (true) {
-            int bytesRead = audioRecord.read(micWriteBuffer, micWriteBuffer.capacity());
-            if (bytesRead == micWriteBuffer.capacity()) {
-                AudioDevice.audioDeviceWriteCaptureData(capturingAudioDeviceContext, micWriteBuffer);
-            } else {
-                String errorMessage = "AudioRecord.read failed: " + bytesRead;
-                Log.e(TAG, errorMessage);
-                if (bytesRead == AudioRecord.ERROR_INVALID_OPERATION) {
-                    stopRecording();
-                    Log.e(TAG, errorMessage);
+        while (isRecording) {
+            ByteBuffer frame = micRing.claim();
+            ByteBuffer target = (frame != null) ? frame : micWriteBuffer;
+            target.clear();
+            long start = pipelineStats.micRead.begin();
+            int bytesRead = audioRecord.read(target, target.capacity());
+            long end = pipelineStats.micRead.end(start);
+            if (bytesRead < 0) {
+                if (isRecording) {
+                    Log.e(TAG, "AudioRecord.read failed: " + bytesRead);
+                    isRecording = false;
                 }
                 break;
             }
+            if (bytesRead < target.capacity()) {
+                pipelineStats.micRead.countShort();
+            }
+            if (frame != null) {
+                frame.limit(bytesRead);
+                micRing.publish(end);
+            }
         }
     };
 
@@ -125,18 +187,28 @@ public class FileAndMicAudioDevice implements AudioDevice {
             this.releaseAudioResources();
             return;
         }
+        int buffersUntilTune = TUNE_INTERVAL_BUFFERS;
         try {
             while (keepAliveRendererRunnable) {
                 // Get 10ms of PCM data from the SDK. Audio data is written into the ByteBuffer provided.
+                long start = pipelineStats.renderRead.begin();
                 AudioDevice.audioDeviceReadRenderData(renderingAudioDeviceContext, readByteBuffer);
+                long readNanos = pipelineStats.renderRead.end(start);
+                CallRecorder recorder = callRecorder;
+                if (recorder != null) {
+                    recorder.recordRemote(readByteBuffer);
+                }
 
                 int bytesWritten = 0;
+                start = pipelineStats.trackWrite.begin();
                 if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
                     bytesWritten = writeOnLollipop(audioTrack, readByteBuffer, readByteBuffer.capacity());
                 } else {
                     bytesWritten = writePreLollipop(audioTrack, readByteBuffer, readByteBuffer.capacity());
                 }
+                pipelineStats.renderFrameAge.recordNanos(pipelineStats.trackWrite.end(start) - readNanos);
                 if (bytesWritten != readByteBuffer.capacity()) {
+                    pipelineStats.trackWrite.countShort();
                     Log.e(TAG, "AudioTrack.write failed: " + bytesWritten);
                     if (bytesWritten == AudioTrack.ERROR_INVALID_OPERATION) {
                         keepAliveRendererRunnable = false;
@@ -146,6 +218,13 @@ public class FileAndMicAudioDevice implements AudioDevice {
                 // The byte buffer must be rewinded since byteBuffer.position() is increased at each
                 // call to AudioTrack.write(). If we don't do this, will fail the next  AudioTrack.write().
                 readByteBuffer.rewind();
+                if (--buffersUntilTune == 0) {
+                    buffersUntilTune = TUNE_INTERVAL_BUFFERS;
+                    AudioTrackTuner tuner = audioTrackTuner;
+                    if (tuner != null) {
+                        tuner.update(SystemClock.elapsedRealtime());
+                    }
+                }
             }
         } catch (IllegalStateException error) {
             error.printStackTrace();
@@ -155,38 +234,121 @@ public class FileAndMicAudioDevice implements AudioDevice {
 
     public FileAndMicAudioDevice(Context context) {
         this.context = context;
+        AudioManager audioManager = (AudioManager) context.getSystemService(Context.AUDIO_SERVICE);
+        int outputSampleRate = parseProperty(audioManager, AudioManager.PROPERTY_OUTPUT_SAMPLE_RATE, 0);
+        rendererSampleRate = (outputSampleRate == AudioFormat.AUDIO_SAMPLE_RATE_44100)
+                ? AudioFormat.AUDIO_SAMPLE_RATE_44100 : AudioFormat.AUDIO_SAMPLE_RATE_48000;
+        // Fall back to half a 10 ms buffer when the device does not tell its burst size.
+        outputFramesPerBurst = parseProperty(audioManager, AudioManager.PROPERTY_OUTPUT_FRAMES_PER_BUFFER,
+                rendererSampleRate / BUFFERS_PER_SECOND / 2);
+        int sampleRate = getCapturerFormat().getSampleRate();
+        captureMixer = new CaptureMixer(
+                sampleRate / BUFFERS_PER_SECOND * getCapturerFormat().getChannelCount(),
+                sampleRate * CROSSFADE_MS / 1000);
+        captureMixer.setGain(CaptureMixer.SOURCE_FILE, 1f);
+        captureMixer.setGain(CaptureMixer.SOURCE_MICROPHONE, 1f);
+        voiceActivityDetector = new VoiceActivityDetector(
+                sampleRate / BUFFERS_PER_SECOND * getCapturerFormat().getChannelCount(),
+                CALLBACK_BUFFER_SIZE_MS, VoiceActivityDetector.DEFAULT_HANGOVER_FRAMES);
     }
 
     /*
-     * This method enables a capturer switch between a file and the microphone.
+     * This method fades the music file in or out of the capture mix. The microphone keeps its own
+     * gain, so the caller can talk over the music. Nothing is stopped or restarted, the file
+     * resumes where it was muted. Safe to call from any thread.
      * @param playMusic
      */
     public void switchInput(boolean playMusic) {
         isMusicPlaying = playMusic;
-        if (playMusic) {
-            initializeStreams();
-            capturerHandler.removeCallbacks(microphoneCapturerRunnable);
-            stopRecording();
-            capturerHandler.post(fileCapturerRunnable);
-        } else {
-            capturerHandler.removeCallbacks(fileCapturerRunnable);
-            capturerHandler.post(microphoneCapturerRunnable);
+        captureMixer.setGain(CaptureMixer.SOURCE_FILE, playMusic ? musicGain : 0f);
+    }
+
+    /*
+     * Gain of the music file while it is playing, 1 leaves it unchanged. Safe to call from any
+     * thread, the change is faded in.
+     */
+    public void setMusicGain(float gain) {
+        musicGain = gain;
+        if (isMusicPlaying) {
+            captureMixer.setGain(CaptureMixer.SOURCE_FILE, gain);
         }
     }
 
+    /*
+     * Gain of the microphone, 0 leaves only the music. Safe to call from any thread, the change is
+     * faded in.
+     */
+    public void setMicrophoneGain(float gain) {
+        captureMixer.setGain(CaptureMixer.SOURCE_MICROPHONE, gain);
+    }
+
+    /*
+     * Number of 10 ms microphone frames that may queue ahead of the SDK, taken into account from
+     * the next call. More frames absorb longer stalls at the cost of up to that much latency.
+     */
+    public void setMicrophoneBufferFrames(int frames) {
+        micBufferFrames = Math.max(1, frames);
+    }
+
+    public int getMicrophoneBufferFrames() {
+        return micBufferFrames;
+    }
+
     public boolean isMusicPlaying() {
         return isMusicPlaying;
     }
 
     /*
-     * Return the AudioFormat used the capturer. This custom device uses 44.1kHz sample rate and
-     * STEREO channel configuration both for microphone and the music file.
+     * Sends low level noise matching the background instead of the microphone while nobody speaks
+     * and no music plays, so the far end hears a steady background and the encoder gets an easy
+     * signal. Safe to call from any thread, off by default.
+     */
+    public void setComfortNoiseEnabled(boolean enabled) {
+        isComfortNoiseEnabled = enabled;
+    }
+
+    public boolean isComfortNoiseEnabled() {
+        return isComfortNoiseEnabled;
+    }
+
+    /*
+     * Talk and silence time and ratios and the number of talk spurts of the running or the last
+     * call.
+     */
+    public String getTalkStats() {
+        return voiceActivityDetector.toString();
+    }
+
+    /*
+     * Capture statistics: delivered, late and skipped frames and how far behind its deadlines the
+     * capturer runs, short microphone reads and clipped samples of the mix.
+     */
+    public String getCaptureStats() {
+        return ((captureScheduler != null) ? captureScheduler.toString() : "")
+                + " mic[" + ((micRing != null) ? micRing : "")
+                + " shortReads=" + pipelineStats.micRead.getShortCount() + "]"
+                + " clipped=" + captureMixer.getClippedSamples();
+    }
+
+    /*
+     * Time spent in and jitter between the calls to audioDeviceReadRenderData, AudioTrack.write,
+     * AudioRecord.read and audioDeviceWriteCaptureData, their short reads and writes, and the
+     * age of the frames each direction hands on, in microseconds. Safe to call during a call.
+     */
+    public String getPipelineStats() {
+        return pipelineStats.toString();
+    }
+
+    /*
+     * Return the AudioFormat used the capturer. This custom device captures the microphone at the
+     * 48kHz MONO format the media engine works in, so the SDK does not resample it. The music file
+     * may be any PCM WAV, it is converted to this format by a FormatConverter.
      */
     @Nullable
     @Override
     public AudioFormat getCapturerFormat() {
-        return new AudioFormat(AudioFormat.AUDIO_SAMPLE_RATE_44100,
-                AudioFormat.AUDIO_SAMPLE_STEREO);
+        return new AudioFormat(AudioFormat.AUDIO_SAMPLE_RATE_48000,
+                AudioFormat.AUDIO_SAMPLE_MONO);
     }
 
     /*
@@ -194,7 +356,7 @@ public class FileAndMicAudioDevice implements AudioDevice {
      */
     @Override
     public boolean onInitCapturer() {
-        int bytesPerFrame = 2 * (BITS_PER_SAMPLE / 8);
+        int bytesPerFrame = getCapturerFormat().getChannelCount() * (BITS_PER_SAMPLE / 8);
         int framesPerBuffer = getCapturerFormat().getSampleRate() / BUFFERS_PER_SECOND;
         // Calculate the minimum buffer size required for the successful creation of
         // an AudioRecord object, in byte units.
@@ -202,15 +364,15 @@ public class FileAndMicAudioDevice implements AudioDevice {
         int minBufferSize =
                 AudioRecord.getMinBufferSize(getCapturerFormat().getSampleRate(),
                         channelConfig, android.media.AudioFormat.ENCODING_PCM_16BIT);
-        micWriteBuffer = ByteBuffer.allocateDirect(bytesPerFrame * framesPerBuffer);
+        micWriteBuffer = ByteBuffer.allocateDirect(bytesPerFrame * framesPerBuffer).order(ByteOrder.LITTLE_ENDIAN);
+        micRing = new FrameRing(micBufferFrames, micWriteBuffer.capacity());
         int bufferSizeInBytes = Math.max(BUFFER_SIZE_FACTOR * minBufferSize, micWriteBuffer.capacity());
         audioRecord = new AudioRecord(MediaRecorder.AudioSource.MIC, getCapturerFormat().getSampleRate(),
-                android.media.AudioFormat.CHANNEL_OUT_STEREO, android.media.AudioFormat.ENCODING_PCM_16BIT, bufferSizeInBytes);
+                channelConfig, android.media.AudioFormat.ENCODING_PCM_16BIT, bufferSizeInBytes);
 
-        fileWriteByteBuffer = ByteBuffer.allocateDirect(bytesPerFrame * framesPerBuffer);
-        writeBufferSize = fileWriteByteBuffer.capacity();
-        // Initialize the streams.
-        initializeStreams();
+        // Map the music file.
+        openWavSource();
+        rewindFile();
         return true;
     }
 
@@ -219,21 +381,25 @@ public class FileAndMicAudioDevice implements AudioDevice {
         // Initialize the AudioDeviceContext
         this.capturingAudioDeviceContext = audioDeviceContext;
         // Create the capturer thread and start
-        capturerThread = new HandlerThread("CapturerThread");
+        capturerThread = new HandlerThread("CapturerThread", Process.THREAD_PRIORITY_URGENT_AUDIO);
         capturerThread.start();
         // Create the capturer handler that processes the capturer Runnables.
         capturerHandler = new Handler(capturerThread.getLooper());
-        capturerHandler.post(fileCapturerRunnable);
+        pipelineStats.resetCapture();
+        voiceActivityDetector.reset();
+        startRecording();
+        captureScheduler = new CaptureScheduler(capturerHandler, CALLBACK_BUFFER_SIZE_MS, captureRunnable);
+        captureScheduler.start();
         return true;
     }
 
     @Override
     public boolean onStopCapturing() {
-        if (isMusicPlaying) {
-            closeStreams();
-        } else {
-            stopRecording();
-        }
+        stopCallRecording();
+        Log.d(TAG, "Stop scheduling captureRunnable, " + getCaptureStats() + "\n" + getPipelineStats()
+                + "\n" + getTalkStats());
+        captureScheduler.stop();
+        stopRecording();
         /*
          * When onStopCapturing is called, the AudioDevice API expects that at the completion
          * of the callback the capturer has completely stopped. As a result, quit the capturer
@@ -248,28 +414,94 @@ public class FileAndMicAudioDevice implements AudioDevice {
     }
 
     /*
-     * Return the AudioFormat used the renderer. This custom device uses 44.1kHz sample rate and
-     * STEREO channel configuration for audio track.
+     * Return the AudioFormat used the renderer. This custom device renders STEREO at the native
+     * output sample rate of the device, 48kHz or 44.1kHz, so the audio track needs no resampling
+     * and can use the low latency path.
      */
     @Nullable
     @Override
     public AudioFormat getRendererFormat() {
-        return new AudioFormat(AudioFormat.AUDIO_SAMPLE_RATE_44100,
-                AudioFormat.AUDIO_SAMPLE_STEREO);
+        return new AudioFormat(rendererSampleRate, AudioFormat.AUDIO_SAMPLE_STEREO);
     }
 
     @Override
     public boolean onInitRenderer() {
+        int sampleRate = getRendererFormat().getSampleRate();
         int bytesPerFrame = getRendererFormat().getChannelCount() * (BITS_PER_SAMPLE / 8);
-        readByteBuffer = ByteBuffer.allocateDirect(bytesPerFrame * (getRendererFormat().getSampleRate() / BUFFERS_PER_SECOND));
-        int channelConfig = channelCountToConfiguration(getRendererFormat().getChannelCount());
-        int minBufferSize = AudioRecord.getMinBufferSize(getRendererFormat().getSampleRate(), channelConfig, android.media.AudioFormat.ENCODING_PCM_16BIT);
-        audioTrack = new AudioTrack(AudioManager.STREAM_VOICE_CALL, getRendererFormat().getSampleRate(), channelConfig,
-                android.media.AudioFormat.ENCODING_PCM_16BIT, minBufferSize, AudioTrack.MODE_STREAM);
+        int framesPerBuffer = sampleRate / BUFFERS_PER_SECOND;
+        readByteBuffer = ByteBuffer.allocateDirect(bytesPerFrame * framesPerBuffer);
+        int channelConfig = (getRendererFormat().getChannelCount() == 1)
+                ? android.media.AudioFormat.CHANNEL_OUT_MONO : android.media.AudioFormat.CHANNEL_OUT_STEREO;
+        int minBufferSize = AudioTrack.getMinBufferSize(sampleRate, channelConfig, android.media.AudioFormat.ENCODING_PCM_16BIT);
+        // The capacity leaves room to grow, the tuner starts at the smallest size that holds a 10 ms write.
+        int capacityInBytes = Math.max(minBufferSize, bytesPerFrame * sampleRate * MAX_RENDER_BUFFER_MS / 1000);
+        AudioTrack.Builder builder = new AudioTrack.Builder()
+                .setAudioAttributes(new AudioAttributes.Builder()
+                        .setUsage(AudioAttributes.USAGE_VOICE_COMMUNICATION)
+                        .setContentType(AudioAttributes.CONTENT_TYPE_SPEECH)
+                        .build())
+                .setAudioFormat(new android.media.AudioFormat.Builder()
+                        .setEncoding(android.media.AudioFormat.ENCODING_PCM_16BIT)
+                        .setSampleRate(sampleRate)
+                        .setChannelMask(channelConfig)
+                        .build())
+                .setTransferMode(AudioTrack.MODE_STREAM)
+                .setBufferSizeInBytes(capacityInBytes);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            builder.setPerformanceMode(AudioTrack.PERFORMANCE_MODE_LOW_LATENCY);
+        }
+        audioTrack = builder.build();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+            audioTrackTuner = new AudioTrackTuner(audioTrack, sampleRate, outputFramesPerBurst,
+                    framesPerBuffer + outputFramesPerBurst, SystemClock.elapsedRealtime());
+        }
         keepAliveRendererRunnable = true;
         return true;
     }
 
+    /*
+     * Starts recording the call into a stereo WAV file, the local audio as sent to the SDK on the
+     * left channel and the remote audio on the right. The recording stops with the call or with
+     * stopCallRecording(), the listener is told once the file is complete.
+     */
+    public synchronized void startCallRecording(@NonNull File file,
+                                                @Nullable CallRecordingListener listener)
+            throws IOException {
+        stopCallRecording();
+        final CallRecorder recorder = new CallRecorder(file,
+                getCapturerFormat().getSampleRate(), getCapturerFormat().getChannelCount(),
+                getRendererFormat().getSampleRate(), getRendererFormat().getChannelCount(),
+                CallRecorder.DEFAULT_DEPTH);
+        recorder.start((listener != null)
+                ? () -> listener.onCallRecordingFinished(file, recorder.toString())
+                : null);
+        callRecorder = recorder;
+    }
+
+    /*
+     * Stops the call recording without waiting for it, its writer thread writes the pending
+     * frames and finalizes the file in the background.
+     */
+    public synchronized void stopCallRecording() {
+        CallRecorder recorder = callRecorder;
+        if (recorder != null) {
+            callRecorder = null;
+            recorder.stop();
+        }
+    }
+
+    public boolean isCallRecording() {
+        return callRecorder != null;
+    }
+
+    /*
+     * Size of the AudioTrack buffer the renderer settled on and its underrun history.
+     */
+    public String getRenderStats() {
+        AudioTrackTuner tuner = audioTrackTuner;
+        return (tuner != null) ? tuner.toString() : "";
+    }
+
     @Override
     public boolean onStartRendering(@NonNull AudioDeviceContext audioDeviceContext) {
         this.renderingAudioDeviceContext = audioDeviceContext;
@@ -278,12 +510,14 @@ public class FileAndMicAudioDevice implements AudioDevice {
         rendererThread.start();
         // Create the capturer handler that processes the renderer Runnables.
         rendererHandler = new Handler(rendererThread.getLooper());
+        pipelineStats.resetRender();
         rendererHandler.post(speakerRendererRunnable);
         return true;
     }
 
     @Override
     public boolean onStopRendering() {
+        Log.d(TAG, "Stop rendering, " + getRenderStats());
         stopAudioTrack();
         // Quit the rendererThread's looper to stop processing any further messages.
         rendererThread.quit();
@@ -300,55 +534,118 @@ public class FileAndMicAudioDevice implements AudioDevice {
     }
 
     // Capturer helper methods
-    private void initializeStreams() {
-        inputStream = null;
-        dataInputStream = null;
-        inputStream = context.getResources().openRawResource(context.getResources().getIdentifier("music",
-                "raw", context.getPackageName()));
-        dataInputStream = new DataInputStream(inputStream);
+    private void openWavSource() {
+        if (wavSource != null) {
+            return;
+        }
+        int resId = context.getResources().getIdentifier("music", "raw", context.getPackageName());
+        if (resId == 0) {
+            Log.e(TAG, "No music file found in res/raw");
+            return;
+        }
         try {
-            int bytes = dataInputStream.skipBytes(WAV_FILE_HEADER_SIZE);
-            Log.d(TAG, "Number of bytes skipped : " + bytes);
+            WavSource source = new WavSource(readRawResource(resId), CALLBACK_BUFFER_SIZE_MS);
+            AudioFormat format = getCapturerFormat();
+            if (source.getSampleRate() != format.getSampleRate() ||
+                    source.getChannelCount() != format.getChannelCount()) {
+                Log.d(TAG, "Converting music file from " + source.getSampleRate() + " Hz, "
+                        + source.getChannelCount() + " channels");
+                fileConverter = new FormatConverter(source.getSampleRate(), source.getChannelCount(),
+                        format.getSampleRate(), format.getChannelCount(), CALLBACK_BUFFER_SIZE_MS);
+            }
+            wavSource = source;
         } catch (IOException e) {
-            e.printStackTrace();
+            Log.e(TAG, "Failed to open music file: " + e.getMessage());
+        }
+    }
+
+    /*
+     * Maps a raw resource, which must be stored uncompressed in the APK (aapt does so for .wav).
+     * Compressed resources are read into a direct buffer instead.
+     */
+    private ByteBuffer readRawResource(int resId) throws IOException {
+        Resources resources = context.getResources();
+        try (AssetFileDescriptor afd = resources.openRawResourceFd(resId)) {
+            if (afd != null) {
+                return WavSource.map(afd.getFileDescriptor(), afd.getStartOffset(), afd.getLength());
+            }
+        } catch (Resources.NotFoundException e) {
+            // compressed in the APK, there is no descriptor to map
+        }
+        try (InputStream inputStream = resources.openRawResource(resId)) {
+            return WavSource.readFully(inputStream);
+        }
+    }
+
+    private void rewindFile() {
+        if (wavSource != null) {
+            wavSource.rewind();
+        }
+        if (fileConverter != null) {
+            fileConverter.reset();
         }
     }
 
-    private void closeStreams() {
-        Log.d(TAG, "Remove any pending posts of fileCapturerRunnable that are in the message queue ");
-        capturerHandler.removeCallbacks(fileCapturerRunnable);
+    /*
+     * Returns the next frame of the music file in the capturer format, looping at its end.
+     */
+    private ByteBuffer nextFileFrame() {
+        if (wavSource == null) {
+            return null;
+        }
+        ByteBuffer frame = wavSource.nextFrame();
+        if (frame == null) {
+            // The converter keeps its state so the loop point does not click more than the file does.
+            wavSource.rewind();
+            frame = wavSource.nextFrame();
+        }
+        if (frame != null && fileConverter != null) {
+            frame = fileConverter.process(frame);
+        }
+        return frame;
+    }
+
+    private void startRecording() {
         try {
-            dataInputStream.close();
-            inputStream.close();
-        } catch (IOException e) {
-            e.printStackTrace();
+            audioRecord.startRecording();
+        } catch (IllegalStateException e) {
+            Log.e(TAG, "AudioRecord.startRecording failed: " + e.getMessage());
+            return;
         }
+        isRecording = true;
+        micReaderThread = new Thread(microphoneReaderRunnable, "MicReaderThread");
+        micReaderThread.start();
     }
 
     private void stopRecording() {
-        Log.d(TAG, "Remove any pending posts of microphoneCapturerRunnable that are in the message queue ");
-        capturerHandler.removeCallbacks(microphoneCapturerRunnable);
+        isRecording = false;
         try {
             if (audioRecord != null) {
+                // Also releases micReaderThread from a blocking read.
                 audioRecord.stop();
             }
         } catch (IllegalStateException e) {
             Log.e(TAG, "AudioRecord.stop failed: " + e.getMessage());
         }
+        if (micReaderThread != null) {
+            if (!tvo.webrtc.ThreadUtils.joinUninterruptibly(micReaderThread, THREAD_JOIN_TIMEOUT_MS)) {
+                Log.e(TAG, "Join of micReaderThread timed out");
+            }
+            micReaderThread = null;
+        }
     }
 
-    private int channelCountToConfiguration(int channels) {
-        return (channels == 1 ? android.media.AudioFormat.CHANNEL_IN_MONO : android.media.AudioFormat.CHANNEL_IN_STEREO);
+    private static int parseProperty(AudioManager audioManager, String key, int defaultValue) {
+        String value = audioManager.getProperty(key);
+        try {
+            return (value != null) ? Integer.parseInt(value) : defaultValue;
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
     }
 
-    private void processRemaining(ByteBuffer bb, int chunkSize) {
-        bb.position(bb.limit()); // move at the end
-        bb.limit(chunkSize); // get ready to pad with longs
-        while (bb.position() < chunkSize) {
-            bb.putLong(0);
-        }
-        bb.limit(chunkSize);
-        bb.flip();
+    private int channelCountToConfiguration(int channels) {
+        return (channels == 1 ? android.media.AudioFormat.CHANNEL_IN_MONO : android.media.AudioFormat.CHANNEL_IN_STEREO);
     }
 
     // Renderer helper methods
@@ -0,0 +1,213 @@
+package com.twilio.examplecustomaudiodevice;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/*
+ * Converts 16 bit PCM frames between sample rates and channel counts. Channels are reduced before
+ * resampling and duplicated after it, so a downmix to mono also halves the filter work. The
+ * resampler is a rational L/M polyphase FIR built from a Blackman windowed sinc. All state is
+ * allocated up front, process() does not allocate.
+ *
+ * Plain Java without Android dependencies, FormatConverterBenchmark of the tools module runs it
+ * on a JVM.
+ */
+final class FormatConverter {
+    // zero crossings of the sinc on each side of its center, trades stop band for CPU
+    private static final int ZERO_CROSSINGS = 8;
+    // cutoff as a fraction of the lower Nyquist frequency, leaves room for the transition band
+    private static final double ROLLOFF = 0.92;
+
+    private final int inChannels;
+    private final int outChannels;
+    // channels carried through the resampler
+    private final int workChannels;
+    private final int inSamplesPerFrame;
+    private final int outSamplesPerFrame;
+    private final int upFactor;
+    private final int downFactor;
+    private final int tapsPerPhase;
+    // coefficients[phase * tapsPerPhase + tap]
+    private final float[] coefficients;
+    // per work channel: tapsPerPhase - 1 samples of history followed by the current frame
+    private final float[][] input;
+    private final float[][] output;
+    private final ByteBuffer outFrame;
+    // filter position carried into the next frame: phase and input samples already stepped over
+    private int phase;
+    private int carry;
+
+    FormatConverter(int inRate, int inChannels, int outRate, int outChannels, int frameDurationMs) {
+        if (inRate <= 0 || outRate <= 0 || inChannels < 1 || outChannels < 1) {
+            throw new IllegalArgumentException("Invalid format " + inRate + "/" + inChannels
+                    + " -> " + outRate + "/" + outChannels);
+        }
+        this.inChannels = inChannels;
+        this.outChannels = outChannels;
+        this.workChannels = Math.min(inChannels, outChannels);
+        this.inSamplesPerFrame = inRate * frameDurationMs / 1000;
+        this.outSamplesPerFrame = outRate * frameDurationMs / 1000;
+        int gcd = gcd(inRate, outRate);
+        this.upFactor = outRate / gcd;
+        this.downFactor = inRate / gcd;
+        if (upFactor == downFactor) {
+            tapsPerPhase = 1;
+            coefficients = new float[] {1f};
+        } else {
+            // the sinc widens with the decimation ratio, so does the number of input taps
+            tapsPerPhase = (int) Math.ceil(2.0 * ZERO_CROSSINGS * Math.max(upFactor, downFactor) / upFactor);
+            coefficients = designFilter(upFactor, downFactor, tapsPerPhase);
+        }
+        input = new float[workChannels][tapsPerPhase - 1 + inSamplesPerFrame];
+        // one spare sample absorbs rounding of rates that are not a multiple of the frame rate
+        output = new float[workChannels][outSamplesPerFrame + 1];
+        outFrame = ByteBuffer.allocateDirect(outSamplesPerFrame * outChannels * 2)
+                .order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    int getInputFrameSizeInBytes() {
+        return inSamplesPerFrame * inChannels * 2;
+    }
+
+    int getOutputFrameSizeInBytes() {
+        return outFrame.capacity();
+    }
+
+    int getTapsPerPhase() {
+        return tapsPerPhase;
+    }
+
+    /*
+     * Converts one frame, reading getInputFrameSizeInBytes() bytes from the frame's position. The
+     * returned buffer is owned by the converter and overwritten by the next call.
+     */
+    ByteBuffer process(ByteBuffer frame) {
+        frame.order(ByteOrder.LITTLE_ENDIAN);
+        int base = frame.position();
+        int history = tapsPerPhase - 1;
+        int samples = Math.min(inSamplesPerFrame, (frame.limit() - base) / (inChannels * 2));
+        for (int i = 0; i < samples; i++) {
+            int offset = base + i * inChannels * 2;
+            if (workChannels == 1 && inChannels > 1) {
+                int sum = 0;
+                for (int c = 0; c < inChannels; c++) {
+                    sum += frame.getShort(offset + c * 2);
+                }
+                input[0][history + i] = (float) sum / inChannels;
+            } else {
+                for (int c = 0; c < workChannels; c++) {
+                    input[c][history + i] = frame.getShort(offset + c * 2);
+                }
+            }
+        }
+        for (int c = 0; c < workChannels; c++) {
+            for (int i = samples; i < inSamplesPerFrame; i++) {
+                input[c][history + i] = 0f;
+            }
+        }
+
+        int produced = 0;
+        int startPhase = phase;
+        int startCarry = carry;
+        for (int c = 0; c < workChannels; c++) {
+            produced = resample(input[c], output[c], startPhase, startCarry);
+        }
+        for (int n = 0; n < outSamplesPerFrame; n++) {
+            // hold the last sample should rounding leave the frame one short
+            int source = Math.min(n, produced - 1);
+            for (int c = 0; c < outChannels; c++) {
+                float value = (source >= 0) ? output[Math.min(c, workChannels - 1)][source] : 0f;
+                outFrame.putShort((n * outChannels + c) * 2, clip(value));
+            }
+        }
+        for (int c = 0; c < workChannels; c++) {
+            System.arraycopy(input[c], inSamplesPerFrame, input[c], 0, history);
+        }
+        outFrame.clear();
+        return outFrame;
+    }
+
+    void reset() {
+        phase = 0;
+        carry = 0;
+        for (float[] channel : input) {
+            Arrays.fill(channel, 0f);
+        }
+    }
+
+    /*
+     * Runs the polyphase filter over one frame of a channel, starting at the given position, and
+     * returns the number of samples written. The position left for the next frame is stored.
+     */
+    private int resample(float[] in, float[] out, int startPhase, int startCarry) {
+        int history = tapsPerPhase - 1;
+        int p = startPhase;
+        int i = startCarry;
+        int n = 0;
+        while (i < inSamplesPerFrame && n < out.length) {
+            int coefficientBase = p * tapsPerPhase;
+            int sampleBase = history + i;
+            float sum = 0f;
+            for (int k = 0; k < tapsPerPhase; k++) {
+                sum += coefficients[coefficientBase + k] * in[sampleBase - k];
+            }
+            out[n++] = sum;
+            p += downFactor;
+            while (p >= upFactor) {
+                p -= upFactor;
+                i++;
+            }
+        }
+        phase = p;
+        carry = Math.max(0, i - inSamplesPerFrame);
+        return n;
+    }
+
+    private static float[] designFilter(int up, int down, int taps) {
+        int length = up * taps;
+        double center = (length - 1) / 2.0;
+        // cutoff in cycles per sample at the upsampled rate
+        double cutoff = 0.5 * ROLLOFF / Math.max(up, down);
+        double[] prototype = new double[length];
+        for (int j = 0; j < length; j++) {
+            double x = j - center;
+            double sinc = (x == 0) ? 1.0 : Math.sin(2 * Math.PI * cutoff * x) / (2 * Math.PI * cutoff * x);
+            double window = 0.42 - 0.5 * Math.cos(2 * Math.PI * j / (length - 1))
+                    + 0.08 * Math.cos(4 * Math.PI * j / (length - 1));
+            prototype[j] = sinc * window;
+        }
+        float[] coefficients = new float[length];
+        for (int p = 0; p < up; p++) {
+            // unity gain per phase keeps DC flat whatever the phase
+            double sum = 0;
+            for (int k = 0; k < taps; k++) {
+                sum += prototype[p + k * up];
+            }
+            for (int k = 0; k < taps; k++) {
+                coefficients[p * taps + k] = (float) (prototype[p + k * up] / sum);
+            }
+        }
+        return coefficients;
+    }
+
+    private static short clip(float value) {
+        int rounded = Math.round(value);
+        if (rounded > Short.MAX_VALUE) {
+            return Short.MAX_VALUE;
+        }
+        if (rounded < Short.MIN_VALUE) {
+            return Short.MIN_VALUE;
+        }
+        return (short) rounded;
+    }
+
+    private static int gcd(int a, int b) {
+        while (b != 0) {
+            int t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+}
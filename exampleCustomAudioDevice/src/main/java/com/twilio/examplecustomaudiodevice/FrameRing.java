@@ -0,0 +1,119 @@
+package com.twilio.examplecustomaudiodevice;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Lock-free single producer, single consumer ring of preallocated direct audio frames. The
+ * producer fills the frame returned by claim() and publishes it, the consumer reads the frame
+ * returned by peek() in place and releases it, so nothing is copied or allocated. A full ring
+ * counts an overrun and an empty one an underrun; the depth bounds the latency the ring can add.
+ */
+class FrameRing {
+    private final ByteBuffer[] frames;
+    // when each frame was published, for measuring its age once consumed
+    private final long[] publishTimes;
+    private final int depth;
+    // sequence of the next frame to publish and to consume, only their owner advances them
+    private final AtomicLong writeSequence = new AtomicLong();
+    private final AtomicLong readSequence = new AtomicLong();
+    // each written by one side only
+    private volatile long overruns;
+    private volatile long underruns;
+
+    FrameRing(int depth, int frameSizeInBytes) {
+        if (depth < 1) {
+            throw new IllegalArgumentException("depth must be at least 1: " + depth);
+        }
+        this.depth = depth;
+        this.frames = new ByteBuffer[depth];
+        this.publishTimes = new long[depth];
+        for (int i = 0; i < depth; i++) {
+            frames[i] = ByteBuffer.allocateDirect(frameSizeInBytes).order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+
+    /*
+     * Frames published and not yet released, from either thread.
+     */
+    int size() {
+        return (int) (writeSequence.get() - readSequence.get());
+    }
+
+    long getOverruns() {
+        return overruns;
+    }
+
+    // Producer side
+
+    /*
+     * Returns the cleared frame to fill next, or null and counts an overrun when the consumer has
+     * not released enough frames.
+     */
+    @Nullable
+    ByteBuffer claim() {
+        long write = writeSequence.get();
+        if (write - readSequence.get() >= depth) {
+            overruns++;
+            return null;
+        }
+        ByteBuffer frame = frames[(int) (write % depth)];
+        frame.clear();
+        return frame;
+    }
+
+    /*
+     * Hands the claimed frame to the consumer, with its position and limit as the producer left
+     * them.
+     */
+    void publish() {
+        publish(0);
+    }
+
+    /*
+     * Publishes the claimed frame along with the System.nanoTime() its audio was captured at.
+     */
+    void publish(long timeNanos) {
+        long write = writeSequence.get();
+        publishTimes[(int) (write % depth)] = timeNanos;
+        // release store, the frame's content, bounds and time are visible before the sequence is
+        writeSequence.lazySet(write + 1);
+    }
+
+    // Consumer side
+
+    /*
+     * Returns the oldest published frame, or null and counts an underrun when there is none. The
+     * frame stays owned by the ring and must not be used after release().
+     */
+    @Nullable
+    ByteBuffer peek() {
+        long read = readSequence.get();
+        if (read == writeSequence.get()) {
+            underruns++;
+            return null;
+        }
+        return frames[(int) (read % depth)];
+    }
+
+    /*
+     * The time the frame returned by peek() was published with, 0 if it was published without.
+     */
+    long peekTime() {
+        return publishTimes[(int) (readSequence.get() % depth)];
+    }
+
+    void release() {
+        readSequence.lazySet(readSequence.get() + 1);
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "depth=" + depth + " queued=" + size() + " overruns=" + overruns + " underruns=" + underruns;
+    }
+}
@@ -0,0 +1,111 @@
+package com.twilio.examplecustomaudiodevice;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock free log-linear histogram of microsecond latencies. Every power of two range is split in
+ * 16 linear sub-buckets, giving ~6% precision from 1us up to ~12 days, recording never allocates.
+ * The quickstart app has the same histogram; this example builds on its own, without the app
+ * module, so it keeps its own copy.
+ */
+class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_SHIFT = 36;
+    private static final int BUCKET_COUNT = SUB_BUCKET_COUNT * (MAX_SHIFT + 2);
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalMicros = new AtomicLong();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    void recordMicros(final long micros) {
+        final long value = Math.max(0, micros);
+        buckets.incrementAndGet(bucketIndex(value));
+        count.incrementAndGet();
+        totalMicros.addAndGet(value);
+        long max = maxMicros.get();
+        while (value > max && !maxMicros.compareAndSet(max, value)) {
+            max = maxMicros.get();
+        }
+    }
+
+    void recordNanos(final long nanos) {
+        recordMicros(nanos / 1000);
+    }
+
+    long getCount() {
+        return count.get();
+    }
+
+    long getMaxMicros() {
+        return maxMicros.get();
+    }
+
+    long getMeanMicros() {
+        final long samples = count.get();
+        return (0 == samples) ? 0 : totalMicros.get() / samples;
+    }
+
+    /*
+     * Returns the value at the given percentile (0-100], resolved to the middle of the bucket
+     * holding it and capped at the largest recorded value.
+     */
+    long getPercentileMicros(final double percentile) {
+        final long samples = count.get();
+        if (0 == samples) {
+            return 0;
+        }
+        final long rank = Math.max(1, (long) Math.ceil(samples * Math.min(percentile, 100.0) / 100.0));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; ++i) {
+            seen += buckets.get(i);
+            if (seen >= rank) {
+                final long lower = bucketLowerBound(i);
+                final long upper = bucketLowerBound(i + 1);
+                return Math.min(lower + (upper - lower) / 2, maxMicros.get());
+            }
+        }
+        return maxMicros.get();
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "n=" + getCount() + " mean=" + getMeanMicros() + " p50=" + getPercentileMicros(50)
+                + " p99=" + getPercentileMicros(99) + " max=" + getMaxMicros() + " us";
+    }
+
+    void reset() {
+        for (int i = 0; i < BUCKET_COUNT; ++i) {
+            buckets.set(i, 0);
+        }
+        count.set(0);
+        totalMicros.set(0);
+        maxMicros.set(0);
+    }
+
+    private static int bucketIndex(final long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        final int shift = (63 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+        if (shift > MAX_SHIFT) {
+            return BUCKET_COUNT - 1;
+        }
+        final int subBucket = (int) (value >>> shift) - SUB_BUCKET_COUNT;
+        return SUB_BUCKET_COUNT + shift * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    private static long bucketLowerBound(final int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        final int shift = (index - SUB_BUCKET_COUNT) / SUB_BUCKET_COUNT;
+        final int subBucket = (index - SUB_BUCKET_COUNT) % SUB_BUCKET_COUNT;
+        return ((long) (SUB_BUCKET_COUNT + subBucket)) << shift;
+    }
+}
@@ -0,0 +1,177 @@
+package com.twilio.examplecustomaudiodevice;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Locale;
+
+/*
+ * Marks each 16 bit capture frame as speech or silence from its energy and zero crossing rate.
+ * The energy is compared with a noise floor that follows the background quickly down and slowly
+ * up, a frame well above it is speech unless it crosses zero as often as noise does and is only
+ * moderately loud. A hangover keeps the state at speech for a while after the last speech frame
+ * so word endings and short pauses are not cut. Integer arithmetic only, nothing is allocated
+ * per frame. Owned by the capturer thread, the statistics may be read from any thread.
+ */
+class VoiceActivityDetector {
+    // mean square of a sample, -70 dBFS, the noise floor never drops below it
+    private static final long MIN_NOISE_ENERGY = 100;
+    // mean square below which nothing is speech, -50 dBFS
+    private static final long MIN_SPEECH_ENERGY = 10_000;
+    // energy over the noise floor of a speech frame, ~9 dB, and of one that is speech whatever its
+    // zero crossing rate, ~15 dB
+    private static final int SPEECH_RATIO = 8;
+    private static final int STRONG_SPEECH_RATIO = 32;
+    // zero crossings per sample in Q10, voiced speech stays well below a quarter, noise near half
+    private static final int MAX_VOICED_ZCR_Q10 = 256;
+    // the noise floor falls by 1/4 and rises by 1/64 of the difference per frame, and rises by
+    // 1/8192 during voiced speech so a louder background is eventually learnt
+    private static final int FALL_SHIFT = 2;
+    private static final int RISE_SHIFT = 6;
+    private static final int SPEECH_RISE_SHIFT = 13;
+    static final int DEFAULT_HANGOVER_FRAMES = 20;
+
+    private final int samplesPerFrame;
+    private final int frameDurationMs;
+    private final int hangoverFrames;
+    private final ByteBuffer comfortNoiseFrame;
+
+    // owned by the capturer thread
+    private long noiseEnergy = MIN_NOISE_ENERGY;
+    private int hangoverRemaining;
+    private int noiseSeed = 0x2545f491;
+
+    // written by the capturer thread, read from any thread
+    private volatile boolean speech;
+    private volatile long speechFrames;
+    private volatile long silenceFrames;
+    private volatile long talkSpurts;
+
+    VoiceActivityDetector(int samplesPerFrame, int frameDurationMs, int hangoverFrames) {
+        this.samplesPerFrame = samplesPerFrame;
+        this.frameDurationMs = frameDurationMs;
+        this.hangoverFrames = Math.max(0, hangoverFrames);
+        this.comfortNoiseFrame = ByteBuffer.allocateDirect(samplesPerFrame * 2).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /*
+     * Classifies the next frame and returns true while speech is active. A null frame, missing or
+     * muted audio, counts as silence without touching the noise floor.
+     */
+    boolean process(@Nullable ByteBuffer frame) {
+        boolean active = false;
+        if (frame != null) {
+            frame.order(ByteOrder.LITTLE_ENDIAN);
+            int base = frame.position();
+            int samples = Math.min(samplesPerFrame, (frame.limit() - base) / 2);
+            long sumOfSquares = 0;
+            int crossings = 0;
+            int previous = 0;
+            for (int i = 0; i < samples; i++) {
+                int sample = frame.getShort(base + i * 2);
+                sumOfSquares += sample * sample;
+                if ((sample ^ previous) < 0) {
+                    crossings++;
+                }
+                previous = sample;
+            }
+            if (samples > 0) {
+                long energy = sumOfSquares / samples;
+                int zcrQ10 = (crossings << 10) / samples;
+                active = energy >= MIN_SPEECH_ENERGY
+                        && (energy > noiseEnergy * STRONG_SPEECH_RATIO
+                        || (energy > noiseEnergy * SPEECH_RATIO && zcrQ10 < MAX_VOICED_ZCR_Q10));
+                // noise-like frames teach the floor even when loud, fricatives are too short to
+                // move it far
+                updateNoiseFloor(energy, active && zcrQ10 < MAX_VOICED_ZCR_Q10);
+            }
+        }
+        if (active) {
+            hangoverRemaining = hangoverFrames;
+        } else if (hangoverRemaining > 0) {
+            hangoverRemaining--;
+            active = true;
+        }
+        if (active) {
+            if (!speech) {
+                talkSpurts++;
+            }
+            speechFrames++;
+        } else {
+            silenceFrames++;
+        }
+        speech = active;
+        return active;
+    }
+
+    /*
+     * Returns a frame of white noise at the level of the background, to send in place of silent
+     * frames. The returned buffer is owned by the detector and overwritten by the next call.
+     */
+    @NonNull
+    ByteBuffer comfortNoise() {
+        // a uniform distribution over +-sqrt(3) times the RMS has that RMS
+        int amplitude = (int) Math.min(Short.MAX_VALUE, Math.sqrt(3.0 * noiseEnergy));
+        int seed = noiseSeed;
+        for (int i = 0; i < samplesPerFrame; i++) {
+            // xorshift32
+            seed ^= seed << 13;
+            seed ^= seed >>> 17;
+            seed ^= seed << 5;
+            comfortNoiseFrame.putShort(i * 2, (short) (((seed >> 16) * amplitude) >> 15));
+        }
+        noiseSeed = seed;
+        comfortNoiseFrame.clear();
+        return comfortNoiseFrame;
+    }
+
+    long getSpeechMs() {
+        return speechFrames * frameDurationMs;
+    }
+
+    long getSilenceMs() {
+        return silenceFrames * frameDurationMs;
+    }
+
+    /*
+     * Share of the frames so far that were speech, 0 before the first frame.
+     */
+    float getTalkRatio() {
+        long speechCount = speechFrames;
+        long total = speechCount + silenceFrames;
+        return (total == 0) ? 0f : (float) speechCount / total;
+    }
+
+    /*
+     * Starts over, for a new call. Called before the capturer thread starts.
+     */
+    void reset() {
+        noiseEnergy = MIN_NOISE_ENERGY;
+        hangoverRemaining = 0;
+        speech = false;
+        speechFrames = 0;
+        silenceFrames = 0;
+        talkSpurts = 0;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        float talkRatio = getTalkRatio();
+        return String.format(Locale.US, "speech=%d ms silence=%d ms talk=%.1f%% silent=%.1f%% spurts=%d",
+                getSpeechMs(), getSilenceMs(), talkRatio * 100,
+                (speechFrames + silenceFrames == 0) ? 0f : (1 - talkRatio) * 100, talkSpurts);
+    }
+
+    private void updateNoiseFloor(long energy, boolean voiced) {
+        long difference = energy - noiseEnergy;
+        if (difference < 0) {
+            noiseEnergy += difference >> FALL_SHIFT;
+        } else {
+            noiseEnergy += difference >> (voiced ? SPEECH_RISE_SHIFT : RISE_SHIFT);
+        }
+        noiseEnergy = Math.max(MIN_NOISE_ENERGY, noiseEnergy);
+    }
+}
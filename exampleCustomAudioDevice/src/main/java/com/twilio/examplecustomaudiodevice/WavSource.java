@@ -0,0 +1,162 @@
+package com.twilio.examplecustomaudiodevice;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/*
+ * PCM source backed by a memory mapped WAV file. The RIFF chunks are parsed so the fmt and data
+ * chunks are found wherever they are, LIST and other chunks are skipped, and frames are served as
+ * slices of the mapping without copying the audio. Plain Java so the tools module can check the
+ * parser on the JVM.
+ */
+class WavSource {
+    private static final int RIFF = 0x46464952; // "RIFF"
+    private static final int WAVE = 0x45564157; // "WAVE"
+    private static final int FMT = 0x20746d66; // "fmt "
+    private static final int DATA = 0x61746164; // "data"
+    private static final int FORMAT_PCM = 1;
+    private static final int FORMAT_EXTENSIBLE = 0xfffe;
+
+    private final ByteBuffer data;
+    private final int sampleRate;
+    private final int channelCount;
+    private final int frameSizeInBytes;
+    // Zero padded copy of the last frame when the data does not end on a frame boundary.
+    private final ByteBuffer tailFrame;
+
+    WavSource(@NonNull ByteBuffer wav, int frameDurationMs) throws IOException {
+        ByteBuffer buffer = wav.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.remaining() < 12 || buffer.getInt(0) != RIFF || buffer.getInt(8) != WAVE) {
+            throw new IOException("Not a RIFF/WAVE file");
+        }
+        int format = -1;
+        int channels = 0;
+        int rate = 0;
+        int bits = 0;
+        int dataOffset = -1;
+        int dataLength = 0;
+        int offset = 12;
+        while (offset + 8 <= buffer.limit() && (format < 0 || dataOffset < 0)) {
+            int chunkId = buffer.getInt(offset);
+            long chunkSize = buffer.getInt(offset + 4) & 0xffffffffL;
+            int body = offset + 8;
+            if (chunkId == FMT) {
+                if (chunkSize < 16 || body + 16 > buffer.limit()) {
+                    throw new IOException("Truncated fmt chunk");
+                }
+                format = buffer.getShort(body) & 0xffff;
+                channels = buffer.getShort(body + 2) & 0xffff;
+                rate = buffer.getInt(body + 4);
+                bits = buffer.getShort(body + 14) & 0xffff;
+                if (format == FORMAT_EXTENSIBLE && chunkSize >= 40 && body + 26 <= buffer.limit()) {
+                    // the sub format GUID starts with the actual format tag
+                    format = buffer.getShort(body + 24) & 0xffff;
+                }
+            } else if (chunkId == DATA) {
+                dataOffset = body;
+                // streamed files leave the size at 0 or 0xffffffff, the data then runs to the end
+                long available = buffer.limit() - body;
+                dataLength = (int) ((chunkSize == 0 || chunkSize > available) ? available : chunkSize);
+            }
+            // chunks are padded to an even size
+            offset = (int) Math.min(buffer.limit(), body + chunkSize + (chunkSize & 1));
+        }
+        if (format < 0) {
+            throw new IOException("Missing fmt chunk");
+        }
+        if (dataOffset < 0) {
+            throw new IOException("Missing data chunk");
+        }
+        if (format != FORMAT_PCM || bits != 16 || channels < 1 || rate * frameDurationMs < 1000) {
+            throw new IOException("Unsupported WAV format " + format + ", " + bits + " bit, "
+                    + channels + " channels, " + rate + " Hz");
+        }
+        if (dataLength == 0) {
+            throw new IOException("Empty data chunk");
+        }
+        sampleRate = rate;
+        channelCount = channels;
+        frameSizeInBytes = channels * (bits / 8) * (rate * frameDurationMs / 1000);
+
+        buffer.position(dataOffset).limit(dataOffset + dataLength);
+        data = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+        int tail = data.limit() % frameSizeInBytes;
+        if (tail != 0) {
+            tailFrame = ByteBuffer.allocateDirect(frameSizeInBytes).order(ByteOrder.LITTLE_ENDIAN);
+            ByteBuffer remaining = data.duplicate();
+            remaining.position(data.limit() - tail);
+            tailFrame.put(remaining);
+            tailFrame.clear();
+        } else {
+            tailFrame = null;
+        }
+    }
+
+    int getSampleRate() {
+        return sampleRate;
+    }
+
+    int getChannelCount() {
+        return channelCount;
+    }
+
+    int getFrameSizeInBytes() {
+        return frameSizeInBytes;
+    }
+
+    /*
+     * Returns the next frame as a direct buffer of exactly getFrameSizeInBytes() bytes, or null
+     * once the data is exhausted. The buffer is a read only view of the file, do not keep it.
+     */
+    @Nullable
+    ByteBuffer nextFrame() {
+        int position = data.position();
+        if (position + frameSizeInBytes <= data.limit()) {
+            data.limit(position + frameSizeInBytes);
+            ByteBuffer frame = data.slice().order(ByteOrder.LITTLE_ENDIAN);
+            data.limit(data.capacity()).position(position + frameSizeInBytes);
+            return frame;
+        }
+        if (tailFrame != null && position < data.limit()) {
+            data.position(data.limit());
+            return tailFrame;
+        }
+        return null;
+    }
+
+    void rewind() {
+        data.rewind();
+    }
+
+    static ByteBuffer map(@NonNull FileDescriptor fd, long offset, long length) throws IOException {
+        // The channel shares the descriptor's owner, closing it is left to the caller. The mapping
+        // stays valid once the descriptor is closed.
+        FileChannel channel = new FileInputStream(fd).getChannel();
+        return channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+    }
+
+    static ByteBuffer readFully(@NonNull InputStream inputStream) throws IOException {
+        byte[] chunk = new byte[16 * 1024];
+        ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+        int read;
+        while ((read = inputStream.read(chunk)) > 0) {
+            if (buffer.remaining() < read) {
+                ByteBuffer grown = ByteBuffer.allocateDirect(Math.max(buffer.capacity() * 2, buffer.position() + read));
+                buffer.flip();
+                grown.put(buffer);
+                buffer = grown;
+            }
+            buffer.put(chunk, 0, read);
+        }
+        buffer.flip();
+        return buffer;
+    }
+}
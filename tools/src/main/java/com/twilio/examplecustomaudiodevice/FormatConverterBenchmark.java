@@ -0,0 +1,77 @@
+package com.twilio.examplecustomaudiodevice;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Locale;
+
+/*
+ * Measures the CPU cost of FormatConverter per second of converted audio. Plain JVM code, run it
+ * on a workstation:
+ *
+ *     ./gradlew :tools:benchmarkFormatConverter [--args=seconds]
+ *
+ * Every conversion runs single threaded over a 997 Hz tone after a warm up pass, so the wall
+ * time is the CPU time of the capturer thread.
+ */
+public final class FormatConverterBenchmark {
+    private static final int FRAME_DURATION_MS = 10;
+    private static final int[][] CONVERSIONS = {
+            // inRate, inChannels, outRate, outChannels
+            {44100, 2, 48000, 1},
+            {44100, 2, 16000, 1},
+            {44100, 2, 48000, 2},
+            {48000, 2, 48000, 1},
+            {16000, 1, 48000, 1},
+            {8000, 1, 48000, 1},
+    };
+
+    public static void main(String[] args) {
+        int seconds = (args.length > 0) ? Integer.parseInt(args[0]) : 60;
+        System.out.println(String.format(Locale.US, "%-26s %6s %14s %10s",
+                "conversion", "taps", "ms cpu/s audio", "x realtime"));
+        for (int[] conversion : CONVERSIONS) {
+            FormatConverter converter = new FormatConverter(conversion[0], conversion[1],
+                    conversion[2], conversion[3], FRAME_DURATION_MS);
+            ByteBuffer[] frames = tone(conversion[0], conversion[1], converter.getInputFrameSizeInBytes());
+            int frameCount = seconds * 1000 / FRAME_DURATION_MS;
+            run(converter, frames, frameCount / 4);
+            long start = System.nanoTime();
+            long checksum = run(converter, frames, frameCount);
+            double elapsedMs = (System.nanoTime() - start) / 1e6;
+            double msPerSecond = elapsedMs / seconds;
+            System.out.println(String.format(Locale.US, "%5d Hz/%d -> %5d Hz/%d %9d %14.3f %10.0f%s",
+                    conversion[0], conversion[1], conversion[2], conversion[3],
+                    converter.getTapsPerPhase(), msPerSecond, 1000 / msPerSecond,
+                    (checksum == 0) ? " (silent output)" : ""));
+        }
+    }
+
+    private static long run(FormatConverter converter, ByteBuffer[] frames, int frameCount) {
+        long checksum = 0;
+        for (int i = 0; i < frameCount; i++) {
+            ByteBuffer frame = frames[i % frames.length];
+            frame.clear();
+            checksum += Math.abs(converter.process(frame).getShort(0));
+        }
+        return checksum;
+    }
+
+    /*
+     * One second of a tone, cut into frames so the loop reads fresh buffers.
+     */
+    private static ByteBuffer[] tone(int rate, int channels, int frameSizeInBytes) {
+        int samplesPerFrame = frameSizeInBytes / (2 * channels);
+        ByteBuffer[] frames = new ByteBuffer[1000 / FRAME_DURATION_MS];
+        for (int f = 0; f < frames.length; f++) {
+            frames[f] = ByteBuffer.allocateDirect(frameSizeInBytes).order(ByteOrder.LITTLE_ENDIAN);
+            for (int i = 0; i < samplesPerFrame; i++) {
+                double t = (double) (f * samplesPerFrame + i) / rate;
+                short value = (short) (16000 * Math.sin(2 * Math.PI * 997 * t));
+                for (int c = 0; c < channels; c++) {
+                    frames[f].putShort(value);
+                }
+            }
+        }
+        return frames;
+    }
+}
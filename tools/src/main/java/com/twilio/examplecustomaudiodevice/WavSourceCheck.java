@@ -0,0 +1,177 @@
+package com.twilio.examplecustomaudiodevice;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/*
+ * Checks the RIFF chunk walk of WavSource against hand built files. Plain JVM code, part of
+ * ./gradlew :tools:check, or run it alone:
+ *
+ *     ./gradlew :tools:checkWavSource
+ *
+ * Exits with a non zero status on the first file that is not parsed as expected.
+ */
+public final class WavSourceCheck {
+    private static final int FRAME_DURATION_MS = 10;
+    private static final int RATE = 8000;
+    // one 10 ms frame of 8 kHz mono 16 bit audio
+    private static final int FRAME_BYTES = RATE * FRAME_DURATION_MS / 1000 * 2;
+    private static final int FORMAT_PCM = 1;
+    private static final int FORMAT_FLOAT = 3;
+    private static final int FORMAT_EXTENSIBLE = 0xfffe;
+
+    public static void main(String[] args) {
+        // an odd sized chunk is followed by a pad byte that is not part of its size
+        checkFrames("odd sized chunk before fmt",
+                wav(chunk("LIST", 3), fmt(FORMAT_PCM, 16), data(2 * FRAME_BYTES)), 2);
+        checkFrames("odd sized chunk between fmt and data",
+                wav(fmt(FORMAT_PCM, 16), chunk("junk", 5), data(FRAME_BYTES)), 1);
+        checkFrames("data before fmt",
+                wav(data(FRAME_BYTES), fmt(FORMAT_PCM, 16)), 1);
+        checkFrames("trailing chunk after data",
+                wav(fmt(FORMAT_PCM, 16), data(FRAME_BYTES), chunk("LIST", 7)), 1);
+
+        // streamed files leave the data size unset, the data runs to the end of the file
+        checkFrames("data size 0", wav(fmt(FORMAT_PCM, 16), dataOfSize(0, 3 * FRAME_BYTES)), 3);
+        checkFrames("data size 0xffffffff",
+                wav(fmt(FORMAT_PCM, 16), dataOfSize(0xffffffff, 3 * FRAME_BYTES)), 3);
+        checkFrames("data size past the end",
+                wav(fmt(FORMAT_PCM, 16), dataOfSize(10 * FRAME_BYTES, 2 * FRAME_BYTES)), 2);
+        checkFrames("partial last frame", wav(fmt(FORMAT_PCM, 16), data(FRAME_BYTES + 2)), 2);
+
+        checkFrames("WAVE_FORMAT_EXTENSIBLE pcm",
+                wav(fmtExtensible(FORMAT_PCM), data(FRAME_BYTES)), 1);
+        checkRejected("WAVE_FORMAT_EXTENSIBLE float",
+                wav(fmtExtensible(FORMAT_FLOAT), data(FRAME_BYTES)));
+        checkRejected("truncated WAVE_FORMAT_EXTENSIBLE",
+                wav(fmt(FORMAT_EXTENSIBLE, 16), data(FRAME_BYTES)));
+
+        checkRejected("not RIFF", ByteBuffer.allocate(64));
+        checkRejected("missing fmt", wav(data(FRAME_BYTES)));
+        checkRejected("missing data", wav(fmt(FORMAT_PCM, 16)));
+        checkRejected("empty data", wav(fmt(FORMAT_PCM, 16), data(0)));
+        checkRejected("8 bit", wav(fmt(FORMAT_PCM, 8), data(FRAME_BYTES)));
+        System.out.println("WavSource: all checks passed");
+    }
+
+    private static void checkFrames(String name, ByteBuffer wav, int expectedFrames) {
+        WavSource source = null;
+        try {
+            source = new WavSource(wav, FRAME_DURATION_MS);
+        } catch (IOException e) {
+            expect(name, false, "rejected: " + e.getMessage());
+        }
+        expect(name, source.getSampleRate() == RATE && source.getChannelCount() == 1,
+                "format " + source.getSampleRate() + " Hz/" + source.getChannelCount());
+        expect(name, source.getFrameSizeInBytes() == FRAME_BYTES,
+                "frame size " + source.getFrameSizeInBytes());
+        int frames = 0;
+        int sample = 0;
+        ByteBuffer frame;
+        while ((frame = source.nextFrame()) != null) {
+            expect(name, frame.remaining() == FRAME_BYTES, "frame of " + frame.remaining() + " bytes");
+            for (int i = 0; i < FRAME_BYTES / 2; i++, sample++) {
+                // the data holds a ramp, a partial last frame is padded with silence
+                short value = frame.getShort(frame.position() + i * 2);
+                expect(name, value == (short) sample || value == 0,
+                        "sample " + sample + " is " + value);
+            }
+            frames++;
+        }
+        expect(name, frames == expectedFrames, frames + " frames instead of " + expectedFrames);
+        source.rewind();
+        expect(name, source.nextFrame() != null, "no frame after rewind");
+    }
+
+    private static void checkRejected(String name, ByteBuffer wav) {
+        try {
+            new WavSource(wav, FRAME_DURATION_MS);
+        } catch (IOException e) {
+            return;
+        }
+        expect(name, false, "accepted");
+    }
+
+    private static void expect(String name, boolean condition, String failure) {
+        if (!condition) {
+            System.err.println("WavSource: " + name + ": " + failure);
+            System.exit(1);
+        }
+    }
+
+    private static ByteBuffer wav(ByteBuffer... chunks) {
+        int size = 12;
+        for (ByteBuffer chunk : chunks) {
+            size += chunk.remaining();
+        }
+        ByteBuffer wav = ByteBuffer.allocateDirect(size).order(ByteOrder.LITTLE_ENDIAN);
+        wav.putInt(fourCc("RIFF")).putInt(size - 8).putInt(fourCc("WAVE"));
+        for (ByteBuffer chunk : chunks) {
+            wav.put(chunk);
+        }
+        wav.flip();
+        return wav;
+    }
+
+    private static ByteBuffer fmt(int format, int bits) {
+        ByteBuffer body = body(16);
+        body.putShort((short) format).putShort((short) 1).putInt(RATE).putInt(RATE * bits / 8)
+                .putShort((short) (bits / 8)).putShort((short) bits);
+        return chunk("fmt ", body);
+    }
+
+    private static ByteBuffer fmtExtensible(int subFormat) {
+        ByteBuffer body = body(40);
+        body.putShort((short) FORMAT_EXTENSIBLE).putShort((short) 1).putInt(RATE).putInt(RATE * 2)
+                .putShort((short) 2).putShort((short) 16)
+                .putShort((short) 22).putShort((short) 16).putInt(0x4) // cbSize, valid bits, mask
+                .putShort((short) subFormat); // rest of the sub format GUID left zero
+        return chunk("fmt ", body);
+    }
+
+    private static ByteBuffer data(int bytes) {
+        return dataOfSize(bytes, bytes);
+    }
+
+    /*
+     * A data chunk of the given length whose header claims declaredSize bytes.
+     */
+    private static ByteBuffer dataOfSize(int declaredSize, int bytes) {
+        ByteBuffer body = body(bytes);
+        for (int i = 0; i < bytes / 2; i++) {
+            body.putShort((short) i);
+        }
+        return chunk("data", declaredSize, body);
+    }
+
+    private static ByteBuffer chunk(String id, int size) {
+        return chunk(id, body(size));
+    }
+
+    private static ByteBuffer chunk(String id, ByteBuffer body) {
+        return chunk(id, body.capacity(), body);
+    }
+
+    private static ByteBuffer chunk(String id, int declaredSize, ByteBuffer body) {
+        int padding = body.capacity() & 1;
+        ByteBuffer chunk = ByteBuffer.allocate(8 + body.capacity() + padding)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        body.clear();
+        chunk.putInt(fourCc(id)).putInt(declaredSize).put(body);
+        if (padding != 0) {
+            chunk.put((byte) 0);
+        }
+        chunk.flip();
+        return chunk;
+    }
+
+    private static ByteBuffer body(int size) {
+        return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static int fourCc(String id) {
+        return (id.charAt(0) & 0xff) | (id.charAt(1) & 0xff) << 8
+                | (id.charAt(2) & 0xff) << 16 | (id.charAt(3) & 0xff) << 24;
+    }
+}
@@ -0,0 +1,186 @@
+package com.twilio.voice.quickstart;
+
+import static java.lang.String.format;
+
+import com.twilio.voice.quickstart.FlightRecorderFormat.Event;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Decodes a flight recorder file into a readable timeline or a Chrome trace (chrome://tracing,
+ * Perfetto). Plain JVM code, run it on a file pulled from the device:
+ *
+ *     adb exec-out run-as com.twilio.voice.quickstart cat files/flight-recorder.bin > fr.bin
+ *     ./gradlew :tools:run --args="[--chrome] $PWD/fr.bin"
+ *
+ * Dates are derived from the clock reference stored with every record, so records written
+ * before a reboot keep their own dates. Timestamps restart at every boot, the Chrome trace is
+ * therefore laid out on the wall clock.
+ */
+public final class FlightRecorderDecoder {
+    static final class Record {
+        final long sequence;
+        final long timestampNanos;
+        final UUID callId;
+        final int eventCode;
+        final int payload;
+        final long extra;
+        final long bootWallClockMillis;
+
+        Record(final long sequence,
+               final long timestampNanos,
+               final UUID callId,
+               final int eventCode,
+               final int payload,
+               final long extra,
+               final long bootWallClockMillis) {
+            this.sequence = sequence;
+            this.timestampNanos = timestampNanos;
+            this.callId = callId;
+            this.eventCode = eventCode;
+            this.payload = payload;
+            this.extra = extra;
+            this.bootWallClockMillis = bootWallClockMillis;
+        }
+
+        /*
+         * Wall clock time of the record in microseconds.
+         */
+        long wallClockMicros() {
+            return bootWallClockMillis * 1000 + timestampNanos / 1000;
+        }
+
+        String eventName() {
+            final Event event = Event.fromCode(eventCode);
+            return (null != event) ? event.name() : "EVENT_" + eventCode;
+        }
+    }
+
+    private final List<Record> records = new ArrayList<>();
+
+    FlightRecorderDecoder(final ByteBuffer buffer) throws IOException {
+        buffer.order(FlightRecorderFormat.BYTE_ORDER);
+        if (FlightRecorderFormat.MAGIC != buffer.getInt(FlightRecorderFormat.HEADER_MAGIC)) {
+            throw new IOException("not a flight recorder file");
+        }
+        if (FlightRecorderFormat.VERSION != buffer.getInt(FlightRecorderFormat.HEADER_VERSION) ||
+                FlightRecorderFormat.RECORD_SIZE !=
+                        buffer.getInt(FlightRecorderFormat.HEADER_RECORD_SIZE)) {
+            throw new IOException("unsupported flight recorder version");
+        }
+        final int capacity = buffer.getInt(FlightRecorderFormat.HEADER_CAPACITY);
+        if (buffer.limit() < FlightRecorderFormat.fileSize(capacity)) {
+            throw new IOException("truncated flight recorder file");
+        }
+        for (int slot = 0; slot < capacity; ++slot) {
+            final int offset = FlightRecorderFormat.recordOffset(slot, capacity);
+            final long marker = buffer.getLong(offset + FlightRecorderFormat.RECORD_MARKER);
+            // empty, torn or stale slots do not hold the sequence they are expected to
+            if (0 == marker || slot != (marker - 1) % capacity) {
+                continue;
+            }
+            final long msb = buffer.getLong(offset + FlightRecorderFormat.RECORD_CALL_MSB);
+            final long lsb = buffer.getLong(offset + FlightRecorderFormat.RECORD_CALL_LSB);
+            records.add(new Record(
+                    marker - 1,
+                    buffer.getLong(offset + FlightRecorderFormat.RECORD_TIMESTAMP),
+                    (0 == msb && 0 == lsb) ? null : new UUID(msb, lsb),
+                    buffer.getInt(offset + FlightRecorderFormat.RECORD_EVENT),
+                    buffer.getInt(offset + FlightRecorderFormat.RECORD_PAYLOAD),
+                    buffer.getLong(offset + FlightRecorderFormat.RECORD_EXTRA),
+                    buffer.getLong(offset + FlightRecorderFormat.RECORD_BOOT_WALL_CLOCK)));
+        }
+        records.sort((a, b) -> Long.compare(a.sequence, b.sequence));
+    }
+
+    void writeText(final PrintStream out) {
+        final SimpleDateFormat dateFormat =
+                new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS", Locale.US);
+        long previousMicros = -1;
+        for (Record record : records) {
+            final long micros = record.wallClockMicros();
+            final long deltaMicros = (0 > previousMicros) ? 0 : micros - previousMicros;
+            out.println(format(Locale.US, "%s %+10.3fms #%d %-22s call=%s payload=%d extra=%d",
+                    dateFormat.format(new Date(micros / 1000)),
+                    deltaMicros / 1e3,
+                    record.sequence,
+                    record.eventName(),
+                    (null != record.callId) ? record.callId : "-",
+                    record.payload,
+                    record.extra));
+            previousMicros = micros;
+        }
+    }
+
+    /*
+     * Chrome trace event format: every call is a track holding its events as instants plus one
+     * span from its first to its last event, events without a call go to track 0.
+     */
+    void writeChromeTrace(final PrintStream out) {
+        final Map<UUID, Integer> tracks = new LinkedHashMap<>();
+        final Map<UUID, long[]> spans = new LinkedHashMap<>();
+        for (Record record : records) {
+            if (null != record.callId) {
+                if (!tracks.containsKey(record.callId)) {
+                    tracks.put(record.callId, tracks.size() + 1);
+                    spans.put(record.callId,
+                            new long[] {record.wallClockMicros(), record.wallClockMicros()});
+                }
+                spans.get(record.callId)[1] = record.wallClockMicros();
+            }
+        }
+        out.println("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[");
+        out.print("{\"ph\":\"M\",\"name\":\"thread_name\",\"pid\":1,\"tid\":0,"
+                + "\"args\":{\"name\":\"process\"}}");
+        for (Map.Entry<UUID, Integer> track : tracks.entrySet()) {
+            final long[] span = spans.get(track.getKey());
+            out.print(format(Locale.US,
+                    ",\n{\"ph\":\"M\",\"name\":\"thread_name\",\"pid\":1,\"tid\":%d,"
+                            + "\"args\":{\"name\":\"call %s\"}}",
+                    track.getValue(), track.getKey()));
+            out.print(format(Locale.US,
+                    ",\n{\"ph\":\"X\",\"name\":\"call\",\"pid\":1,\"tid\":%d,"
+                            + "\"ts\":%d,\"dur\":%d}",
+                    track.getValue(), span[0], span[1] - span[0]));
+        }
+        for (Record record : records) {
+            out.print(format(Locale.US,
+                    ",\n{\"ph\":\"i\",\"s\":\"t\",\"name\":\"%s\",\"pid\":1,\"tid\":%d,"
+                            + "\"ts\":%d,\"args\":{\"sequence\":%d,\"payload\":%d,\"extra\":%d}}",
+                    record.eventName(),
+                    (null != record.callId) ? tracks.get(record.callId) : 0,
+                    record.wallClockMicros(),
+                    record.sequence,
+                    record.payload,
+                    record.extra));
+        }
+        out.println("\n]}");
+    }
+
+    public static void main(final String[] args) throws IOException {
+        final boolean chrome = 2 == args.length && "--chrome".equals(args[0]);
+        if (args.length != (chrome ? 2 : 1)) {
+            System.err.println("usage: FlightRecorderDecoder [--chrome] <flight-recorder.bin>");
+            System.exit(1);
+        }
+        final FlightRecorderDecoder decoder = new FlightRecorderDecoder(
+                ByteBuffer.wrap(Files.readAllBytes(Paths.get(args[args.length - 1]))));
+        if (chrome) {
+            decoder.writeChromeTrace(System.out);
+        } else {
+            decoder.writeText(System.out);
+        }
+    }
+}